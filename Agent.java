@@ -3,6 +3,9 @@
  * 
  * All Agents must have three things: a constructor that initializes the agent with a game
  * and whether the agent is the red player, a name, and the ability to move.
+ * 
+ * An agent that would rather choose a column than change the board itself can extend
+ * ColumnAgent instead.
  */
 public abstract class Agent
 {
@@ -11,6 +14,11 @@ public abstract class Agent
     protected Connect4Game myGame;
     protected boolean iAmRed;
     
+    public static final long NO_LIMIT = Long.MAX_VALUE; // what getTimeLeft() and getClockLeft() return when there is no limit
+    private long moveStart; // System.nanoTime() when the current move started
+    private long moveLimit = NO_LIMIT;  // how long the current move may take, in milliseconds
+    private long clockLeft = NO_LIMIT;  // the time left on the game clock when the current move started, in milliseconds
+    
     /**
      * Constructs a new agent.
      * 
@@ -34,6 +42,72 @@ public abstract class Agent
      * You MUST override this method in your agent.
      */
     public abstract void move();
+    /**
+     * How long the agent has left to finish the current move, in milliseconds. A move that is
+     * not finished in time loses the game, so an agent that searches should stop well before
+     * this runs out.
+     * 
+     * You MAY use this method in your agent.
+     * 
+     * @return the time left for this move, or NO_LIMIT if there is no time limit.
+     */
+    public long getTimeLeft()
+    {
+        if (moveLimit == NO_LIMIT)
+        {
+            return NO_LIMIT;
+        }
+        return Math.max(0, moveLimit - (System.nanoTime() - moveStart) / 1000000);
+    }
+    /**
+     * How much time the agent had left on its game clock when the current move started, in
+     * milliseconds. This has to last the rest of the game, so an agent should only spend part
+     * of it on each move.
+     * 
+     * You MAY use this method in your agent.
+     * 
+     * @return the time left for the rest of the game, or NO_LIMIT if the game is not timed.
+     */
+    public long getClockLeft()
+    {
+        return clockLeft;
+    }
+    /**
+     * Lets go of anything the agent keeps between moves, such as helper threads or large
+     * tables. The game drivers call this once they have finished with an agent. If the agent
+     * is asked to move again afterwards, it should set itself up again.
+     * 
+     * You MAY override this method in your agent.
+     */
+    public void close()
+    {
+    }
+    /**
+     * Gives the agent a board of its own to move on, in place of the one it was made with.
+     * 
+     * Your agent will not need to use this method.
+     * 
+     * @param game the board.
+     */
+    void setGame(Connect4Game game)
+    {
+        this.myGame = game;
+    }
+    /**
+     * Starts the clock for a move, so getTimeLeft() and getClockLeft() can tell the agent how
+     * long it has.
+     * 
+     * Your agent will not need to use this method.
+     * 
+     * @param moveLimit how long the move may take in milliseconds, or NO_LIMIT.
+     * @param clockLeft the time left on the game clock in milliseconds, or NO_LIMIT.
+     */
+    void startClock(long moveLimit, long clockLeft)
+    {
+        this.moveStart = System.nanoTime();
+        this.moveLimit = moveLimit;
+        this.clockLeft = clockLeft;
+    }
     /**
      * A name for the agent.
      * 
@@ -42,11 +116,25 @@ public abstract class Agent
      * @return the agent's name.
      */
     public abstract String getName();
+    /**
+     * The name of one of the agent's metrics in MetricsRegistry: the agent's color and name,
+     * then the metric, as in "red.My Agent.move". The color keeps the metrics of two agents with
+     * the same name apart when they play each other.
+     * 
+     * You MAY use this method in your agent.
+     * 
+     * @param metric what is measured.
+     * @return the metric's name.
+     */
+    public String metricName(String metric)
+    {
+        return (iAmRed ? "red." : "yellow.") + getName() + "." + metric;
+    }
     /**
      * The way the agent's name is displayed in the game, with its color.
      * 
      * You should not need to modify this method.
-     *
+     * 
      * @return the agent's name to display in the game.
      */
     public String toString()
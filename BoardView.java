@@ -0,0 +1,105 @@
+/**
+ * A read-only view of a game of Connect 4, as given to a ColumnAgent.
+ * 
+ * A view has no methods that change the game, and apart from copy(), which makes a new game,
+ * none of its methods create objects, so it can be read as often as wanted at no cost. The
+ * game behind it is only changed between moves, never while an agent is choosing one, so
+ * during a move the view can be shared between any number of threads without locking.
+ * 
+ * To try moves out, an agent can make a game of its own with copy() and use drop() and undo()
+ * on that.
+ * 
+ * Your agent MAY use this interface.
+ */
+public interface BoardView
+{
+    /**
+     * Get the number of columns in the game.
+     * 
+     * @return the number of columns.
+     */
+    int getColumnCount();
+
+    /**
+     * Get the number of rows in the game.
+     * 
+     * @return the number of rows.
+     */
+    int getRowCount();
+
+    /**
+     * Get the number of tokens in a row needed to win.
+     * 
+     * @return the win length.
+     */
+    int getWinLength();
+
+    /**
+     * Check if a slot is filled.
+     * 
+     * @param column the column of the slot.
+     * @param row the row of the slot, with row 0 at the top of the board.
+     * @return true if the slot holds a token, false otherwise.
+     */
+    boolean isFilled(int column, int row);
+
+    /**
+     * Check if a slot holds a red token.
+     * 
+     * @param column the column of the slot.
+     * @param row the row of the slot, with row 0 at the top of the board.
+     * @return true if the slot holds a red token, false if it holds a yellow one or is empty.
+     */
+    boolean isRed(int column, int row);
+
+    /**
+     * Get the number of tokens in a column.
+     * 
+     * @param column the column to check.
+     * @return the number of tokens in the column.
+     */
+    int height(int column);
+
+    /**
+     * Check if a token can be dropped into a column.
+     * 
+     * @param column the column to check.
+     * @return true if the column exists and is not full, false otherwise.
+     */
+    boolean isPlayable(int column);
+
+    /**
+     * Get the number of tokens on the board.
+     * 
+     * @return the number of tokens on the board.
+     */
+    int getTokenCount();
+
+    /**
+     * Get the column of the most recently placed token, which is the opponent's last move.
+     * 
+     * @return the column, or -1 if the board is empty.
+     */
+    int getLastColumn();
+
+    /**
+     * Get a 64-bit key for the current position; see Connect4Game.getHash().
+     * 
+     * @return the Zobrist hash of the board.
+     */
+    long getHash();
+
+    /**
+     * Check whether red played the first token of the game.
+     * 
+     * @return true if red went first, false if yellow did.
+     */
+    boolean getRedPlayedFirst();
+
+    /**
+     * Make a game of your own in the same position, to try moves on.
+     * 
+     * @return a new game, which can be changed without changing the one being viewed.
+     */
+    Connect4Game copy();
+}
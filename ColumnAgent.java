@@ -0,0 +1,54 @@
+/**
+ * The abstract class for an Agent that only chooses a column, and leaves the game to play it.
+ * 
+ * Instead of being given a board to change, a ColumnAgent is shown a read-only view of the real
+ * board and returns the column it wants. The referee checks that the column is open and drops
+ * the token itself, so it has no need to copy the board before the move or to check the whole
+ * board after it. The same view can be handed to several threads at once, for an agent that
+ * searches in parallel.
+ * 
+ * A ColumnAgent still works with anything that calls move(): move() plays the chosen column on
+ * myGame.
+ * 
+ * All ColumnAgents must have a constructor that initializes the agent with a game and whether
+ * the agent is the red player, a name, and the ability to choose a column.
+ */
+public abstract class ColumnAgent extends Agent
+{
+    /**
+     * Constructs a new agent.
+     * 
+     * You MAY override this method in your agent. If you do, make sure to call...
+     *  super(game, iAmRed);
+     * ...before constructing any other initial information.
+     * 
+     * @param game the game for the agent to play.
+     * @param iAmRed whether the agent is the red player.
+     */
+    public ColumnAgent(Connect4Game game, boolean iAmRed)
+    {
+        super(game, iAmRed);
+    }
+    /**
+     * Choose the column to play. The view shows the board with the agent to move; it must not
+     * be kept after this method returns, since it goes on showing the game as it changes.
+     * 
+     * Under a referee, myGame is not kept up to date for a ColumnAgent; use the view.
+     * 
+     * You MUST override this method in your agent.
+     * 
+     * @param view the board.
+     * @return the column to drop a token into. A column that is full or does not exist loses
+     *         the game.
+     */
+    public abstract int chooseColumn(BoardView view);
+    /**
+     * Make a move in the game, by playing the column chooseColumn() picks on myGame.
+     * 
+     * Your agent will not need to use this method.
+     */
+    public final void move()
+    {
+        myGame.drop(chooseColumn(myGame.view()), iAmRed);
+    }
+}
@@ -1,11 +1,16 @@
 /**
  * A single column in a Connect 4 game. A column stores a number of individual slots.
  * 
+ * A column is a view onto the board held by its Connect4Game: it does not store any tokens
+ * itself, so changes made through the column are seen by the game and vice versa.
+ * 
  * You should not modify this class, but you will need to use methods within it.
  */
 public class Connect4Column
 {
-    private Connect4Slot[] slots;
+    private Connect4Game game;  // the game whose board this column views
+    private int index;  // which column of the game this is
+    private Connect4Slot[] slots;   // the slot views, created the first time a slot is requested
     
     /**
      * Creates a new Connect4Column with a given height.
@@ -16,11 +21,7 @@ public class Connect4Column
      */
     public Connect4Column(int height)
     {
-        slots = new Connect4Slot[height];
-        for (int i = 0; i < height; i++)
-        {
-            slots[i] = new Connect4Slot();
-        }
+        this(new Connect4Game(1, height), 0);
     }
     /**
      * Creates a copy of the given Connect4Column.
@@ -31,12 +32,28 @@ public class Connect4Column
      */
     public Connect4Column(Connect4Column column)
     {
-        this.slots = new Connect4Slot[column.getRowCount()];
+        this(column.getRowCount());
         for (int i = 0; i < column.getRowCount(); i++)
         {
-            slots[i] = new Connect4Slot(column.getSlot(i));
+            if (column.game.isFilled(column.index, i))
+            {
+                game.fillSlot(0, i, column.game.isRed(column.index, i));
+            }
         }
     }
+    /**
+     * Creates a view of one column of a game.
+     * 
+     * Your agent will not need to use this method.
+     * 
+     * @param game the game whose board the column views.
+     * @param index which column of the game to view.
+     */
+    Connect4Column(Connect4Game game, int index)
+    {
+        this.game = game;
+        this.index = index;
+    }
     /**
      * Returns a single Connect4Slot from the column.
      * 
@@ -47,8 +64,17 @@ public class Connect4Column
      */
     public Connect4Slot getSlot(int i)
     {
-        if (i < slots.length && i >= 0)
+        if (i < game.getRowCount() && i >= 0)
         {
+            if (slots == null)
+            {
+                Connect4Slot[] views = new Connect4Slot[game.getRowCount()];
+                for (int j = 0; j < views.length; j++)
+                {
+                    views[j] = new Connect4Slot(game, index, j);
+                }
+                slots = views;
+            }
             return slots[i];
         }
         else
@@ -65,14 +91,19 @@ public class Connect4Column
      */
     public boolean getIsFull()
     {
-        for (Connect4Slot slot : slots)
-        {
-            if (!slot.getIsFilled())
-            {
-                return false;
-            }
-        }
-        return true;
+        return game.height(index) == game.getRowCount();
+    }
+    /**
+     * Returns the number of tokens in the column. The next token dropped into the column
+     * lands at index getRowCount() - getHeight() - 1.
+     * 
+     * Your agent MAY use this method instead of looking through the slots.
+     * 
+     * @return the number of tokens in the column.
+     */
+    public int getHeight()
+    {
+        return game.height(index);
     }
     /**
      * Returns the number of rows in the column.
@@ -83,6 +114,6 @@ public class Connect4Column
      */
     public int getRowCount()
     {
-        return slots.length;
+        return game.getRowCount();
     }
 }
@@ -1,11 +1,21 @@
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
+import java.util.List;
 import java.util.Random;
 
 /**
  * The main driver of the Connect4Game, as well as the visualization of it.
  * 
+ * Moves are played on a background thread, so the window stays responsive however long an agent
+ * thinks. After each move the thread hands a copy of the board to the window, and the panel is
+ * repainted at most once a frame, showing only the latest board. The stop button ends a running
+ * game after the move being thought about.
+ * 
+ * The moves themselves are run by a Referee, which gives each agent a board of its own and can
+ * limit how long the agents may think; see TimeControl. How long the moves take can be watched
+ * over JMX; see MetricsRegistry.
+ * 
  * You should not modify this class, and your agent should not need to access the methods within
  * it directly.
  */
@@ -15,12 +25,18 @@ public class Connect4Frame extends JFrame
     Connect4Game myGame;    // the game itself
     Agent redPlayer, yellowPlayer;   // the two players playing the game
     boolean redPlayerturn, gameActive;  // booleans controlling whose turn it is and whether a game is ongoing
-    JButton newGameButton, nextMoveButton, playToEndButton;   // the buttons controlling the game
+    JButton newGameButton, nextMoveButton, playToEndButton, stopButton;   // the buttons controlling the game
     JLabel updateLabel; // the status label describing the events of the game
     Random r;   // a random number generator to randomly decide who plays first
+    Referee referee;    // runs and checks the players' moves, and keeps time
+    GameWorker worker;  // the thread playing moves, or null when none is
+    volatile boolean stopRequested; // set by the stop button; the worker stops after the current move
+    Timer frameTimer;   // repaints the changed slots once a frame while moves are being played
+
+    private static final int FRAME_MILLIS = 1000 / 30;  // the time between repaints while moves are being played
 
     /**
-     * Creates a new Connect4Frame with a given game and pair of players.
+     * Creates a new Connect4Frame with a given game and pair of players, with no time limits.
      * 
      * Your agent will not need to use this method.
      * 
@@ -29,16 +45,40 @@ public class Connect4Frame extends JFrame
      * @param yellowPlayer the agent playing as the yellow tokens.
      */
     public Connect4Frame(Connect4Game game, Agent redPlayer, Agent yellowPlayer)
+    {
+        this(game, redPlayer, yellowPlayer, TimeControl.NONE);
+    }
+
+    /**
+     * Creates a new Connect4Frame with a given game, pair of players and time control.
+     * 
+     * Your agent will not need to use this method.
+     * 
+     * @param game the game itself.
+     * @param redPlayer the agent playing as the red tokens.
+     * @param yellowPlayer the agent playing as the yellow tokens.
+     * @param timeControl how long the agents may think.
+     */
+    public Connect4Frame(Connect4Game game, Agent redPlayer, Agent yellowPlayer, TimeControl timeControl)
     {
         super();
 
-        this.myGame = game;   // stores the game itself
         this.redPlayer = redPlayer;   // stores the red player
         this.yellowPlayer = yellowPlayer; //stores the yellow player
+        this.referee = new Referee(game, redPlayer, yellowPlayer, timeControl);   // gives the players their own boards
+        this.myGame = referee.getGame();  // stores the real board, which the players never see
+        try
+        {
+            MetricsRegistry.getDefault().register();  // lets the move times be watched over JMX
+        }
+        catch (javax.management.JMException e)
+        {
+            System.out.println("Metrics are not available over JMX: " + e);
+        }
         gameActive = false;   // initially sets that no game is active
         r = new Random();   // creates the random number generator
 
-        myPanel = new Connect4Panel(game);  // creates the panel for displaying the game
+        myPanel = new Connect4Panel(myGame);  // creates the panel for displaying the game
 
         newGameButton = new JButton("Start a New Game");    // creates the button for starting a new game
         newGameButton.setAlignmentX(Component.CENTER_ALIGNMENT);    // center-aligns the new game button
@@ -69,6 +109,24 @@ public class Connect4Frame extends JFrame
                 }
             });
 
+        stopButton = new JButton("Stop");   // creates the button for stopping a game being played
+        stopButton.setEnabled(false);   // disables the button until moves are being played
+        stopButton.setAlignmentX(Component.CENTER_ALIGNMENT);   // centers the button
+        stopButton.addActionListener(new ActionListener() { // connects the stop button to its buttonPressed method
+                public void actionPerformed(ActionEvent e)
+                {
+                    stopButtonPressed();
+                }
+            });
+
+        frameTimer = new Timer(FRAME_MILLIS, new ActionListener() { // repaints the changed slots, if any, once a frame
+                public void actionPerformed(ActionEvent e)
+                {
+                    myPanel.repaintChanges();
+                }
+            });
+        frameTimer.setCoalesce(true);
+
         updateLabel = new JLabel(redPlayer.toString() + " vs. " + yellowPlayer.toString()); // creates the status label
         updateLabel.setAlignmentX(Component.CENTER_ALIGNMENT);  // centers the status label
 
@@ -81,6 +139,8 @@ public class Connect4Frame extends JFrame
         buttonPane.add(nextMoveButton);
         buttonPane.add(Box.createRigidArea(new Dimension(10,0)));
         buttonPane.add(playToEndButton);
+        buttonPane.add(Box.createRigidArea(new Dimension(10,0)));
+        buttonPane.add(stopButton);
         buttonPane.add(Box.createHorizontalGlue());
 
         setLayout(new BoxLayout(getContentPane(),BoxLayout.Y_AXIS));    // sets the overall pane to be vertically oriented
@@ -88,7 +148,7 @@ public class Connect4Frame extends JFrame
         this.add(updateLabel);  // adds the update label
         this.add(myPanel);  // adds the visual of the game board
         this.pack();    // shrinks the window to the appropriate size
-        this.setResizable(false);   // makes the window not resizable
+        this.setResizable(true);    // lets the window be resized; the board scales to fit
         this.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);    // close the application when the window is closed
         this.setVisible(true);  // show the window
     }
@@ -103,56 +163,42 @@ public class Connect4Frame extends JFrame
     public void alert(String text)
     {
         updateLabel.setText(text);
-        this.repaint();
     }
 
     /**
-     * Runs the next move of the game.
+     * Runs the next move of the game. This is called on the worker thread.
      * 
      * Your agent will not need to use this method.
+     * 
+     * @return the text for the update label after the move.
      */
-    private void nextMove()
+    private String nextMove()
     {
-        Connect4Game oldBoard = new Connect4Game(myGame);   // store the old board for validation
-        if(redPlayerturn) // if it's the red player's turn, run their move
+        Agent opponent = redPlayerturn ? yellowPlayer : redPlayer;
+        String moveResult = referee.move(redPlayerturn); // run the move, and play it if it is valid and in time
+        if(moveResult.length() > 0) // if the move was invalid, failed or was late, show why and cancel the game
         {
-            redPlayer.move();
-            alert(yellowPlayer.toString() + " plays next...");
-        }
-        else // if it's the yellow player's turn, run their move
-        {
-            yellowPlayer.move();
-            alert(redPlayer.toString() + " plays next...");
-        }
-        String validateResult = oldBoard.validate(myGame); // check and make sure this is a valid next move for this board
-        if(validateResult.length() > 0) // if there was a validation error, show it and cancel the game
-        {
-            alert(validateResult);  // show the error
-            disableButtons();   // stop the game
             gameActive = false;
+            return moveResult;
         }
         redPlayerturn = !redPlayerturn;   // switch whose turn it is
-        char won = myGame.gameWon();    // check if the game has been won
-        if (won != 'N') // if the game has been won...
+        char won = myGame.gameWon();    // check if the game has been won, which highlights the winning line
+        if (won != 'N') // if the game has been won, say who won
         {
-            disableButtons();   // disable the buttons
             gameActive = false;
-            if (myGame.gameWon() == 'R') // if red won, say so
-            {
-                alert(redPlayer.toString() + " wins!");
-            }
-            else if (myGame.gameWon() == 'Y') // if yellow won, say so
-            {
-                alert(yellowPlayer.toString() + " wins!");
-            }
+            return (won == 'R' ? redPlayer : yellowPlayer).toString() + " wins!";
         }
-        else if (myGame.boardFull()) // if the board is full...
+        else if (myGame.boardFull()) // if the board is full, announce the draw
         {
-            disableButtons();   // disable the buttons
-            alert("The game ended in a draw!"); // announce the draw
             gameActive = false;
+            return "The game ended in a draw!";
         }
-        this.repaint();
+        long clock = referee.getClockLeft(redPlayerturn);
+        if (clock != Agent.NO_LIMIT) // if the game is timed, say how long the next player has left
+        {
+            return opponent.toString() + " plays next, with " + String.format("%.1f", clock / 1000.0) + " s left...";
+        }
+        return opponent.toString() + " plays next...";
     }
 
     /**
@@ -163,7 +209,7 @@ public class Connect4Frame extends JFrame
     private void newGame()
     {
         myGame.clearBoard();
-        enableButtons();
+        referee.newGame();
         gameActive = true;
         redPlayerturn = r.nextBoolean();
         if (redPlayerturn)
@@ -176,42 +222,28 @@ public class Connect4Frame extends JFrame
             alert(yellowPlayer.toString() + " plays first!");
             myGame.setRedPlayedFirst(false);
         }
-        this.repaint();
+        enableButtons();
+        myPanel.setGame(new Connect4Game(myGame));
+        myPanel.repaintChanges();
     }
 
     /**
-     * Runs the game until it's over.
+     * Starts playing moves on the worker thread: one move, or every move until the game ends.
+     * The buttons other than stop are disabled until the worker is done.
      * 
      * Your agent will not need to use this method.
+     * 
+     * @param toEnd true to play until the game ends, false for a single move.
      */
-    private void playToEnd()
+    private void startMoves(boolean toEnd)
     {
-        while (gameActive) // keep playing the next move until the game ends
-        {
-            nextMove();
-        }
-        char won = myGame.gameWon();
-        if (won != 'N') // when it ends, announce how it ended: win or draw
-        {
-            disableButtons();
-            if (myGame.gameWon() == 'R')
-            {
-                alert(redPlayer.toString() + " wins!");
-            }
-            else if (myGame.gameWon() == 'Y')
-            {
-                alert(yellowPlayer.toString() + " wins!");
-            }
-        }
-        else if (myGame.boardFull())
-        {
-            disableButtons();
-            alert("The game ended in a draw!");
-        }
-        else // if it didn't end in a win or draw, leave the error message u
-        {
-            disableButtons();
-        }
+        stopRequested = false;
+        newGameButton.setEnabled(false);
+        disableButtons();
+        stopButton.setEnabled(toEnd);
+        worker = new GameWorker(toEnd);
+        frameTimer.start();
+        worker.execute();
     }
 
     /**
@@ -231,7 +263,7 @@ public class Connect4Frame extends JFrame
      */
     public void nextMoveButtonPressed()
     {
-        nextMove();
+        startMoves(false);
     }
 
     /**
@@ -241,7 +273,20 @@ public class Connect4Frame extends JFrame
      */
     public void playToEndButtonPressed()
     {
-        playToEnd();
+        startMoves(true);
+    }
+
+    /**
+     * Reacts to the stop button being pressed. The move being thought about is finished first,
+     * since an agent cannot be stopped in the middle of one.
+     * 
+     * Your agent will not need to use this method.
+     */
+    public void stopButtonPressed()
+    {
+        stopRequested = true;
+        stopButton.setEnabled(false);
+        alert("Stopping after this move...");
     }
 
     /**
@@ -266,4 +311,97 @@ public class Connect4Frame extends JFrame
         playToEndButton.setEnabled(true);
     }
 
+    /**
+     * Plays moves off the event thread, and hands a copy of the board and the status text to the
+     * window after each one.
+     */
+    private class GameWorker extends SwingWorker<Update, Update>
+    {
+        private final boolean toEnd;    // true to play until the game ends or is stopped, false for one move
+
+        GameWorker(boolean toEnd)
+        {
+            this.toEnd = toEnd;
+        }
+
+        /**
+         * Plays the moves. The agents think here, on the worker thread.
+         */
+        protected Update doInBackground()
+        {
+            Update update;
+            do
+            {
+                String text = nextMove();
+                update = new Update(new Connect4Game(myGame), text);
+                publish(update);
+            }
+            while (toEnd && gameActive && !stopRequested);
+            return update;
+        }
+
+        /**
+         * Shows the latest board published; any earlier ones would only be painted over.
+         */
+        protected void process(List<Update> updates)
+        {
+            if (worker == this) // a late batch after done() has already shown the final board
+            {
+                show(updates.get(updates.size() - 1));
+            }
+        }
+
+        /**
+         * Shows the board the moves ended on, and gives the buttons back.
+         */
+        protected void done()
+        {
+            worker = null;
+            frameTimer.stop();
+            try
+            {
+                show(get());
+            }
+            catch (Exception e)
+            {
+                gameActive = false;
+                alert("The game stopped: " + e);
+            }
+            if (stopRequested && gameActive)
+            {
+                alert("Stopped. " + updateLabel.getText());
+            }
+            newGameButton.setEnabled(true);
+            stopButton.setEnabled(false);
+            if (gameActive)
+            {
+                enableButtons();
+            }
+            myPanel.repaintChanges();
+        }
+
+        /**
+         * Gives the panel a new board to paint at the next frame, and updates the label.
+         */
+        private void show(Update update)
+        {
+            myPanel.setGame(update.game);
+            alert(update.text);
+        }
+    }
+
+    /**
+     * A copy of the board after a move, and the status text to show with it.
+     */
+    private static class Update
+    {
+        final Connect4Game game;
+        final String text;
+
+        Update(Connect4Game game, String text)
+        {
+            this.game = game;
+            this.text = text;
+        }
+    }
 }
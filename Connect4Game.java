@@ -1,16 +1,53 @@
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 /**
  * The data structure for a game of Connect 4.
  * 
  * Connect4Game is made of a certain number of Connect4Columns. Each column represents
  * a column from the current state of the game.
  * 
+ * Internally the board is stored as a packed bitboard: every column owns (rows + 1) bits,
+ * counted from the bottom of the column upwards, with the extra bit left empty as a
+ * sentinel. Each 64-bit word of the bitboard is kept as a pair of longs, one for the red
+ * tokens and one for the yellow tokens, so a standard 7x6 board is just two longs and a
+ * column-height array. Larger boards simply use more words. The Connect4Column and
+ * Connect4Slot objects returned by this class are thin views over the bitboard.
+ * 
+ * The number of tokens in a row needed to win is four unless the game is made with another.
+ * When the whole board fits in one word, a move is first checked for a win with a few shifts
+ * and masks of that word; on bigger boards, and to find the line once a win is seen, the
+ * tokens in a row through the new token are counted, which looks at no more slots however big
+ * the board is.
+ * 
  * You should not modify this class, but you will need to use methods within it.
  */
 public class Connect4Game
 {
-    private Connect4Column[] columns;
+    private int columnCount;    // the number of columns in the game board
+    private int rowCount;   // the number of rows in the game board
+    private int columnStride;   // the number of bits reserved for each column: one per row plus a sentinel
+    private long[] board;   // the packed bitboard; word w is stored as board[2w] (red) and board[2w + 1] (yellow)
+    private int[] heights;  // the number of tokens in each column
+    private long[] highlights;  // the highlighted slots, one bit per slot; created the first time a slot is highlighted
+    private Connect4Column[] columns;   // the column views, created the first time a column is requested
+    private BoardView view; // the read-only view, created the first time it is requested
+    private int[] moves;    // the bit of each token on the board, in the order they were placed
+    private int filledCount;    // the number of tokens on the board, and so the size of the moves stack
+    private int lastColumn, lastRow;    // the slot of the most recently placed token; -1 if there is none
+    private char winner;    // 'R' or 'Y' once a line has been made, 'N' until then
+    private int winLength;  // the number of tokens in a row needed to win
+    private int winColumn, winRow, winColumnStep, winRowStep, winLineLength;   // the winning line, for highlighting
+    private int winPly; // the number of tokens on the board when the game was won
+    private long[] zobrist; // a random key for each bit and color, shared by every game of the same size and win length
+    private long[] bottomSlots; // for each bitboard word, the bits that are the bottom slot of a column; shared by copies
+    private long hash;  // the Zobrist key of the current position
     private boolean redPlayedFirst;
     
+    public static final int DEFAULT_WIN_LENGTH = 4; // the number of tokens in a row needed to win, unless a game says otherwise
+    private static final ConcurrentMap<String, long[]> ZOBRIST_CACHE = new ConcurrentHashMap<String, long[]>(); // the keys for each size and win length made so far
+
     /**
      * Construct a new Connect 4 game with the given size.
      * 
@@ -21,11 +58,40 @@ public class Connect4Game
      */
     public Connect4Game(int numCols, int numRows)
     {
-        columns=new Connect4Column[numCols];
-        for(int i = 0; i < numCols; i++)
+        this(numCols, numRows, DEFAULT_WIN_LENGTH);
+    }
+    /**
+     * Construct a new game with the given size, won by a line of the given length instead of four.
+     * 
+     * Your agent will not need to use this method.
+     * 
+     * @param numCols The number of columns in the game board
+     * @param numRows The number of rows in the game board
+     * @param winLength The number of tokens in a row needed to win
+     */
+    public Connect4Game(int numCols, int numRows, int winLength)
+    {
+        if (winLength < 1)
+        {
+            throw new IllegalArgumentException("The win length must be at least 1, not " + winLength);
+        }
+        this.winLength = winLength;
+        columnCount = numCols;
+        rowCount = numRows;
+        columnStride = numRows + 1;
+        int words = (numCols * columnStride + 63) >>> 6;
+        board = new long[Math.max(words, 1) * 2];
+        heights = new int[numCols];
+        moves = new int[numCols * numRows];
+        zobrist = cachedZobristKeys(numCols, numRows, winLength, board.length / 2 * 64);
+        bottomSlots = new long[board.length / 2];
+        for (int i = 0; i < numCols; i++)
         {
-            columns[i] = new Connect4Column(numRows);
+            bottomSlots[(i * columnStride) >>> 6] |= 1L << (i * columnStride);
         }
+        lastColumn = -1;
+        lastRow = -1;
+        winner = 'N';
     }
     /**
      * Copy an existing Connect 4 game.
@@ -36,13 +102,64 @@ public class Connect4Game
      */
     public Connect4Game(Connect4Game game)
     {
-        columns = new Connect4Column[game.getColumnCount()];
-        for (int i = 0; i < game.getColumnCount(); i++)
+        columnCount = game.columnCount;
+        rowCount = game.rowCount;
+        columnStride = game.columnStride;
+        winLength = game.winLength;
+        board = game.board.clone();
+        heights = game.heights.clone();
+        moves = game.moves.clone();
+        zobrist = game.zobrist;
+        bottomSlots = game.bottomSlots;
+        hash = game.hash;
+        filledCount = game.filledCount;
+        lastColumn = game.lastColumn;
+        lastRow = game.lastRow;
+        winner = game.winner;
+        winColumn = game.winColumn;
+        winRow = game.winRow;
+        winColumnStep = game.winColumnStep;
+        winRowStep = game.winRowStep;
+        winLineLength = game.winLineLength;
+        winPly = game.winPly;
+        redPlayedFirst = game.redPlayedFirst;
+        highlights = game.highlights == null ? null : game.highlights.clone();
+    }
+
+    /**
+     * Make this game the same as another of the same size, in place, so that anything holding
+     * on to this game sees the change.
+     * 
+     * Your agent will not need to use this method.
+     * 
+     * @param game The game to copy, which must have the same size and win length.
+     */
+    void copyFrom(Connect4Game game)
+    {
+        if (game.board.length != board.length || game.columnCount != columnCount || game.rowCount != rowCount
+            || game.winLength != winLength)
         {
-            columns[i] = new Connect4Column(game.getColumn(i));
+            throw new IllegalArgumentException("Cannot copy a " + game.columnCount + "x" + game.rowCount
+                + " game into a " + columnCount + "x" + rowCount + " game");
         }
+        System.arraycopy(game.board, 0, board, 0, board.length);
+        System.arraycopy(game.heights, 0, heights, 0, heights.length);
+        System.arraycopy(game.moves, 0, moves, 0, game.filledCount);
+        hash = game.hash;
+        filledCount = game.filledCount;
+        lastColumn = game.lastColumn;
+        lastRow = game.lastRow;
+        winner = game.winner;
+        winColumn = game.winColumn;
+        winRow = game.winRow;
+        winColumnStep = game.winColumnStep;
+        winRowStep = game.winRowStep;
+        winLineLength = game.winLineLength;
+        winPly = game.winPly;
+        redPlayedFirst = game.redPlayedFirst;
+        highlights = game.highlights == null ? null : game.highlights.clone();
     }
-    
+
     /**
      * Retrieve a certain Connect4Column from the game board.
      * 
@@ -53,8 +170,17 @@ public class Connect4Game
      */
     public Connect4Column getColumn(int i)
     {
-        if (i < columns.length && i >= 0)
+        if (i < columnCount && i >= 0)
         {
+            if (columns == null)
+            {
+                Connect4Column[] views = new Connect4Column[columnCount];
+                for (int j = 0; j < columnCount; j++)
+                {
+                    views[j] = new Connect4Column(this, j);
+                }
+                columns = views;
+            }
             return columns[i];
         }
         else
@@ -62,7 +188,7 @@ public class Connect4Game
             return null;
         }
     }
-    
+
     /**
      * Get the total number of columns in the game board.
      * 
@@ -72,7 +198,7 @@ public class Connect4Game
      */
     public int getColumnCount()
     {
-        return columns.length;
+        return columnCount;
     }
     /**
      * Get the total number of rows in the game board.
@@ -83,7 +209,18 @@ public class Connect4Game
      */
     public int getRowCount()
     {
-        return columns[0].getRowCount();
+        return rowCount;
+    }
+    /**
+     * Get the number of tokens in a row needed to win.
+     * 
+     * Your agent MAY use this method.
+     * 
+     * @return the win length; four unless the game was made with another.
+     */
+    public int getWinLength()
+    {
+        return winLength;
     }
     /**
      * Start a new game.
@@ -92,13 +229,15 @@ public class Connect4Game
      */
     public void clearBoard()
     {
-        for (int i = 0; i < getColumnCount(); i++)
-        {
-            for (int j = 0; j < getRowCount(); j++)
-            {
-                getColumn(i).getSlot(j).clear();
-            }
-        }
+        Arrays.fill(board, 0L);
+        Arrays.fill(heights, 0);
+        highlights = null;
+        filledCount = 0;
+        hash = 0;
+        lastColumn = -1;
+        lastRow = -1;
+        winner = 'N';
+        winPly = 0;
     }
     /**
      * Retrieve a matrix form of the board.
@@ -112,11 +251,11 @@ public class Connect4Game
         char[][] board = new char[getRowCount()][getColumnCount()];
         for (int i = 0; i < getColumnCount(); i++)
         {
-            for(int j = 0; j < getRowCount(); j++) 
+            for(int j = 0; j < getRowCount(); j++)
             {
-                if (getColumn(i).getSlot(j).getIsFilled())
+                if (isFilled(i, j))
                 {
-                    if (getColumn(i).getSlot(j).getIsRed())
+                    if (isRed(i, j))
                     {
                         board[j][i] = 'R';
                     }
@@ -142,85 +281,28 @@ public class Connect4Game
      */
     public boolean boardFull()
     {
-        char[][] board = getBoardMatrix();
-        for (int i = 0; i < getColumnCount(); i++)
-        {
-            for (int j = 0; j < getRowCount(); j++)
-            {
-                if (board[j][i] == 'B')
-                {
-                    return false;
-                }
-            }
-        }
-        return true;
+        return filledCount == columnCount * rowCount;
     }
     /**
      * Check if the game has been won.
      * 
+     * The winner is worked out as each token is placed, by looking only along the lines through
+     * that token, so this method does not need to scan the board.
+     * 
      * Your agent will not need to use this method.
      * 
      * @return 'R' if red won, 'Y' if yellow won, 'N' if the game has not been won.
      */
     public char gameWon()
     {
-        char[][] board = getBoardMatrix();
-        
-        for (int i = 0; i < getColumnCount(); i++)
+        if (winner != 'N')
         {
-            for (int j = 0; j < getRowCount(); j++)
+            for (int k = 0; k < winLineLength; k++)
             {
-                if(board[j][i] != 'B')
-                {
-                    if (j + 3 < getRowCount())
-                    {
-                        if(board[j][i] == board[j + 1][i] && board[j][i] == board[j + 2][i] && board[j][i] == board[j + 3][i])
-                        {
-                            highlightSlot(j, i);
-                            highlightSlot(j + 1, i);
-                            highlightSlot(j + 2, i);
-                            highlightSlot(j + 3, i);
-                            return board[j][i];
-                        }
-                    }
-                    if (i + 3 < getColumnCount())
-                    {
-                        if (board[j][i] == board[j][i + 1] && board[j][i] == board[j][i + 2] && board[j][i] == board[j][i + 3])
-                        {
-                            highlightSlot(j, i);
-                            highlightSlot(j, i + 1);
-                            highlightSlot(j, i + 2);
-                            highlightSlot(j, i + 3);
-                            return board[j][i];
-                        }
-                    }
-                    if (i + 3 < getColumnCount() && j + 3 < getRowCount())
-                    {
-                        if(board[j][i] == board[j + 1][i + 1] && board[j][i] == board[j + 2][i + 2] && board[j][i] == board[j + 3][i + 3])
-                        {
-                            highlightSlot(j, i);
-                            highlightSlot(j + 1, i + 1);
-                            highlightSlot(j + 2, i + 2);
-                            highlightSlot(j + 3,i + 3);
-                            return board[j][i];
-                        }
-                    }
-                    if (i > 2 && j + 3 < getRowCount())
-                    {
-                        if (board[j][i] == board[j + 1][i - 1] && board[j][i] == board[j + 2][i - 2] && board[j][i] == board[j + 3][i - 3])
-                        {
-                            highlightSlot(j, i);
-                            highlightSlot(j + 1, i - 1);
-                            highlightSlot(j + 2, i - 2);
-                            highlightSlot(j + 3, i - 3);
-                            return board[j][i];
-                        }
-                    }
-                }
+                highlightSlot(winRow + k * winRowStep, winColumn + k * winColumnStep);
             }
         }
-
-        return 'N';
+        return winner;
     }
     /**
      * Validate that the given board is a valid next state following this board.
@@ -236,9 +318,9 @@ public class Connect4Game
         {
             for (int j = 0; j < getRowCount(); j++)
             {
-                if (after.getColumn(i).getSlot(j).getIsFilled())
+                if (after.isFilled(i, j))
                 {
-                    if (after.getColumn(i).getSlot(j).getIsRed())
+                    if (after.isRed(i, j))
                     {
                         redSlots++;
                     }
@@ -247,24 +329,421 @@ public class Connect4Game
                         yellowSlots++;
                     }
                 }
-                if (!getColumn(i).getSlot(j).getIsFilled() && after.getColumn(i).getSlot(j).getIsFilled())
+                if (!isFilled(i, j) && after.isFilled(i, j))
                 {
                     filledSlots++;
                 }
-                if (getColumn(i).getSlot(j).getIsFilled() && !after.getColumn(i).getSlot(j).getIsFilled())
+                if (isFilled(i, j) && !after.isFilled(i, j))
                 {
                     return "Invalid move: a token was removed at column " + i + ", row " + j + ".";
                 }
-                if (getColumn(i).getSlot(j).getIsFilled() && (getColumn(i).getSlot(j).getIsRed()!=after.getColumn(i).getSlot(j).getIsRed()))
+                if (isFilled(i, j) && (isRed(i, j) != after.isRed(i, j)))
                 {
                     return "Invalid move: a token was changed at column " + i + ", row " + j + ".";
                 }
-                if (j < getRowCount() - 1 && after.getColumn(i).getSlot(j).getIsFilled() && !after.getColumn(i).getSlot(j+1).getIsFilled())
+                if (j < getRowCount() - 1 && after.isFilled(i, j) && !after.isFilled(i, j + 1))
                 {
                     return "Invalid move: a token in column " + i + " was not placed in the highest open slot.";
                 }
             }
         }
+        return checkCounts(filledSlots, redSlots, yellowSlots, after.getRedPlayedFirst());
+    }
+    /**
+     * Record the tokens on the board, so the next move can be checked with validateMove()
+     * without copying the whole game. The record is just the bitboard: two longs on a standard
+     * board.
+     * 
+     * Your agent will not need to use this method.
+     * 
+     * @param snapshot an array returned by an earlier call, to reuse, or null.
+     * @return the record of the board.
+     */
+    public long[] snapshot(long[] snapshot)
+    {
+        if (snapshot == null || snapshot.length != board.length)
+        {
+            snapshot = new long[board.length];
+        }
+        System.arraycopy(board, 0, snapshot, 0, board.length);
+        return snapshot;
+    }
+    /**
+     * Validate that this board is a valid next state following a board recorded by snapshot().
+     * This gives the same answer as calling validate() on a copy of the earlier board, but
+     * compares whole words of the bitboard at a time, and only looks at single slots if
+     * something is wrong.
+     * 
+     * Your agent will not need to use this method.
+     * 
+     * @param before the earlier board, from snapshot().
+     * @return an error message, or an empty string if the move was valid.
+     */
+    public String validateMove(long[] before)
+    {
+        int filledSlots = 0, redSlots = 0, yellowSlots = 0;
+        long belowCarry = 0;    // the top bit of the previous word, which sits below bit 0 of this one
+        for (int w = 0; w < board.length; w += 2)
+        {
+            long red = board[w], yellow = board[w + 1];
+            long filled = red | yellow;
+            long filledBefore = before[w] | before[w + 1];
+            long removed = filledBefore & ~filled;
+            long changed = (before[w] & yellow) | (before[w + 1] & red);
+            long floating = filled & ~((filled << 1) | belowCarry) & ~bottomSlots[w >>> 1];
+            if ((removed | changed | floating) != 0)
+            {
+                return findInvalidSlot(before);
+            }
+            filledSlots += Long.bitCount(filled & ~filledBefore);
+            redSlots += Long.bitCount(red);
+            yellowSlots += Long.bitCount(yellow);
+            belowCarry = filled >>> 63;
+        }
+        return checkCounts(filledSlots, redSlots, yellowSlots, redPlayedFirst);
+    }
+    /**
+     * Highlight the winning moves in a game.
+     * 
+     * Your agent will not need to use this method.
+     * 
+     * @param row the row of the token to highlight
+     * @param column the column of the token to highlight
+     */
+    public void highlightSlot(int row, int column)
+    {
+        if (highlights == null)
+        {
+            highlights = new long[board.length / 2];
+        }
+        int bit = bitIndex(column, row);
+        highlights[bit >>> 6] |= 1L << bit;
+    }
+
+    /**
+     * Check whether red played first. This is used to confirm the players are alternating correctly.
+     * 
+     * Your agent will not need to use this method.
+     * 
+     * @return true if red played first in this game, false otherwise.
+     */
+    public boolean getRedPlayedFirst()
+    {
+        return redPlayedFirst;
+    }
+
+    /**
+     * Sets whether red played first. This is used to confirm the players are alternating correctly.
+     * 
+     * Your agent will not need to use this method.
+     * 
+     * @param redPlayedFirst true if red played first in this game, false otherwise.
+     */
+    public void setRedPlayedFirst(boolean redPlayedFirst)
+    {
+        this.redPlayedFirst = redPlayedFirst;
+    }
+
+    /**
+     * Check if the game has been won, without highlighting the winning line.
+     * 
+     * Your agent MAY use this method, for example after trying a move with drop().
+     * 
+     * @return 'R' if red won, 'Y' if yellow won, 'N' if the game has not been won.
+     */
+    public char getWinner()
+    {
+        return winner;
+    }
+    
+    /**
+     * Get the number of tokens on the board.
+     * 
+     * Your agent will not need to use this method.
+     * 
+     * @return the number of tokens on the board.
+     */
+    public int getTokenCount()
+    {
+        return filledCount;
+    }
+    
+    /**
+     * Get a 64-bit key for the current position. The key only depends on which token is in
+     * which slot, so the same position always has the same key however it was reached, and
+     * games of the same size always use the same keys. It is updated as each token is placed
+     * or taken back, so this method is cheap enough to call at every position of a search.
+     * 
+     * Your agent MAY use this method, for example to remember positions it has already seen.
+     * 
+     * @return the Zobrist hash of the board.
+     */
+    public long getHash()
+    {
+        return hash;
+    }
+    
+    /**
+     * Get the column of the most recently placed token.
+     * 
+     * Your agent will not need to use this method.
+     * 
+     * @return the column of the last token placed, or -1 if the board is empty.
+     */
+    public int getLastColumn()
+    {
+        return lastColumn;
+    }
+    
+    /**
+     * Get the row of the most recently placed token.
+     * 
+     * Your agent will not need to use this method.
+     * 
+     * @return the row of the last token placed, or -1 if the board is empty.
+     */
+    public int getLastRow()
+    {
+        return lastRow;
+    }
+
+    /**
+     * Check if a slot is filled. This reads the bitboard directly, without going through the
+     * Connect4Column and Connect4Slot views.
+     * 
+     * @param column the column of the slot.
+     * @param row the row of the slot, with row 0 at the top of the board.
+     * @return true if the slot holds a token, false otherwise.
+     */
+    boolean isFilled(int column, int row)
+    {
+        int bit = bitIndex(column, row);
+        int word = (bit >>> 6) << 1;
+        return ((board[word] | board[word + 1]) & (1L << bit)) != 0;
+    }
+
+    /**
+     * Check if a slot holds a red token. Like Connect4Slot.getIsRed(), this returns false for
+     * an empty slot.
+     * 
+     * @param column the column of the slot.
+     * @param row the row of the slot, with row 0 at the top of the board.
+     * @return true if the slot holds a red token, false otherwise.
+     */
+    boolean isRed(int column, int row)
+    {
+        int bit = bitIndex(column, row);
+        return (board[(bit >>> 6) << 1] & (1L << bit)) != 0;
+    }
+
+    /**
+     * Check if a slot is highlighted as part of a winning move.
+     * 
+     * @param column the column of the slot.
+     * @param row the row of the slot, with row 0 at the top of the board.
+     * @return true if the slot is highlighted, false otherwise.
+     */
+    boolean isHighlighted(int column, int row)
+    {
+        if (highlights == null)
+        {
+            return false;
+        }
+        int bit = bitIndex(column, row);
+        return (highlights[bit >>> 6] & (1L << bit)) != 0;
+    }
+
+    /**
+     * Put a token into a slot, if the slot is empty. This is what Connect4Slot.addRed() and
+     * Connect4Slot.addYellow() do; it does not check that the slot is the lowest open one.
+     * 
+     * @param column the column of the slot.
+     * @param row the row of the slot, with row 0 at the top of the board.
+     * @param red true to place a red token, false to place a yellow token.
+     */
+    void fillSlot(int column, int row, boolean red)
+    {
+        if (isFilled(column, row))
+        {
+            return;
+        }
+        addToken(bitIndex(column, row), red);
+    }
+
+    /**
+     * Empty a single slot and remove its highlight.
+     * 
+     * @param column the column of the slot.
+     * @param row the row of the slot, with row 0 at the top of the board.
+     */
+    void clearSlot(int column, int row)
+    {
+        int bit = bitIndex(column, row);
+        if (isFilled(column, row))
+        {
+            int k = filledCount - 1;
+            while (moves[k] != bit) // find the token in the moves stack and close the gap it leaves
+            {
+                k--;
+            }
+            System.arraycopy(moves, k + 1, moves, k, filledCount - 1 - k);
+            moves[filledCount - 1] = bit;
+            boolean wasWon = winner != 'N';
+            removeToken();
+            if (wasWon)  // the winning line may have been broken, so look for a win from scratch
+            {
+                winner = 'N';
+                for (int i = 0; i < columnCount && winner == 'N'; i++)
+                {
+                    for (int j = 0; j < rowCount && winner == 'N'; j++)
+                    {
+                        if (isFilled(i, j))
+                        {
+                            checkWin(i, j);
+                        }
+                    }
+                }
+                winPly = filledCount;
+            }
+        }
+        if (highlights != null)
+        {
+            highlights[bit >>> 6] &= ~(1L << bit);
+        }
+    }
+
+    /**
+     * Drop a token into a column, so that it lands on top of the tokens already there.
+     * 
+     * Together with undo(), this lets an agent try out moves on a copy of the game without
+     * copying the board for every move it looks at.
+     * 
+     * Your agent MAY use this method.
+     * 
+     * @param column the column to drop the token into.
+     * @param red true to drop a red token, false to drop a yellow token.
+     * @return the row the token landed in, or -1 if the column does not exist or is full.
+     */
+    public int drop(int column, boolean red)
+    {
+        if (!isPlayable(column))
+        {
+            return -1;
+        }
+        addToken(column * columnStride + heights[column], red);
+        return lastRow;
+    }
+
+    /**
+     * Take back the most recently placed token.
+     * 
+     * Your agent MAY use this method.
+     * 
+     * @return the column the token was taken from, or -1 if the board is empty.
+     */
+    public int undo()
+    {
+        if (filledCount == 0)
+        {
+            return -1;
+        }
+        int column = moves[filledCount - 1] / columnStride;
+        removeToken();
+        return column;
+    }
+
+    /**
+     * Get the number of tokens in a column.
+     * 
+     * Your agent MAY use this method instead of looking through the column's slots.
+     * 
+     * @param column the column to check.
+     * @return the number of tokens in the column.
+     */
+    public int height(int column)
+    {
+        return heights[column];
+    }
+
+    /**
+     * Check if a token can be dropped into a column.
+     * 
+     * Your agent MAY use this method.
+     * 
+     * @param column the column to check.
+     * @return true if the column exists and is not full, false otherwise.
+     */
+    public boolean isPlayable(int column)
+    {
+        return column >= 0 && column < columnCount && heights[column] < rowCount;
+    }
+
+    /**
+     * Get a read-only view of this game. The view always shows the game as it is now, and
+     * cannot be used to change it or cast back to it.
+     * 
+     * Your agent will not need to use this method; a ColumnAgent is given the view.
+     * 
+     * @return the view, which is the same object every time.
+     */
+    public BoardView view()
+    {
+        if (view == null)
+        {
+            view = new View();
+        }
+        return view;
+    }
+
+    /**
+     * Read the tokens of one color in a column as bits: bit k is the slot k places above the
+     * given slot, counting up from the bottom of the column. At most 64 slots are read, so
+     * taller columns are read a piece at a time.
+     * 
+     * @param column the column to read.
+     * @param fromBottom the slot to start at, with 0 for the bottom slot.
+     * @param red true to read the red tokens, false to read the yellow tokens.
+     * @return the tokens as bits.
+     */
+    long columnBits(int column, int fromBottom, boolean red)
+    {
+        int count = Math.min(64, rowCount - fromBottom);
+        if (count <= 0)
+        {
+            return 0;
+        }
+        int bit = column * columnStride + fromBottom;
+        int word = ((bit >>> 6) << 1) + (red ? 0 : 1);
+        int offset = bit & 63;
+        long bits = board[word] >>> offset;
+        if (offset + count > 64)
+        {
+            bits |= board[word + 2] << (64 - offset);
+        }
+        return count == 64 ? bits : bits & ((1L << count) - 1);
+    }
+
+    /**
+     * Get the Zobrist key of a token, which getHash() is the exclusive-or of over every token
+     * on the board.
+     * 
+     * @param column the column of the token.
+     * @param row the row of the token, with row 0 at the top of the board.
+     * @param red true for a red token, false for a yellow token.
+     * @return the key.
+     */
+    long tokenKey(int column, int row, boolean red)
+    {
+        return zobrist[(bitIndex(column, row) << 1) + (red ? 0 : 1)];
+    }
+
+    /**
+     * Checks the number of tokens placed by a move, and that it was made by the right player.
+     * 
+     * @return an error message, or an empty string if the counts are right.
+     */
+    private static String checkCounts(int filledSlots, int redSlots, int yellowSlots, boolean redFirst)
+    {
         if (filledSlots > 1)
         {
             return "Invalid move: more than one token was placed.";
@@ -273,7 +752,7 @@ public class Connect4Game
         {
             return "Invalid move: no move was made.";
         }
-        if (after.getRedPlayedFirst())
+        if (redFirst)
         {
             if (redSlots < yellowSlots)
             {
@@ -297,40 +776,345 @@ public class Connect4Game
         }
         return "";
     }
+
     /**
-     * Highlight the winning moves in a game.
+     * Finds the first slot, in the order validate() looks at them, where a token was removed,
+     * changed or left floating since a snapshot, and describes it as validate() would.
+     */
+    private String findInvalidSlot(long[] before)
+    {
+        for (int i = 0; i < columnCount; i++)
+        {
+            for (int j = 0; j < rowCount; j++)
+            {
+                int bit = bitIndex(i, j);
+                int word = (bit >>> 6) << 1;
+                long mask = 1L << bit;
+                boolean wasFilled = ((before[word] | before[word + 1]) & mask) != 0;
+                boolean wasRed = (before[word] & mask) != 0;
+                if (wasFilled && !isFilled(i, j))
+                {
+                    return "Invalid move: a token was removed at column " + i + ", row " + j + ".";
+                }
+                if (wasFilled && (wasRed != isRed(i, j)))
+                {
+                    return "Invalid move: a token was changed at column " + i + ", row " + j + ".";
+                }
+                if (j < rowCount - 1 && isFilled(i, j) && !isFilled(i, j + 1))
+                {
+                    return "Invalid move: a token in column " + i + " was not placed in the highest open slot.";
+                }
+            }
+        }
+        return "";
+    }
+
+    /**
+     * Put a token on the board, push it onto the moves stack and check if it wins.
      * 
-     * Your agent will not need to use this method.
+     * @param bit the empty bit to fill.
+     * @param red true for a red token, false for a yellow token.
+     */
+    private void addToken(int bit, boolean red)
+    {
+        int column = bit / columnStride;
+        board[((bit >>> 6) << 1) + (red ? 0 : 1)] |= 1L << bit;
+        hash ^= zobrist[(bit << 1) + (red ? 0 : 1)];
+        heights[column]++;
+        moves[filledCount++] = bit;
+        lastColumn = column;
+        lastRow = rowCount - 1 - (bit - column * columnStride);
+        if (winner == 'N')
+        {
+            checkWin(lastColumn, lastRow);
+            if (winner != 'N')
+            {
+                winPly = filledCount;
+            }
+        }
+    }
+
+    /**
+     * Take the token on top of the moves stack off the board.
+     */
+    private void removeToken()
+    {
+        int bit = moves[--filledCount];
+        int word = (bit >>> 6) << 1;
+        hash ^= zobrist[(bit << 1) + ((board[word] & (1L << bit)) != 0 ? 0 : 1)];
+        board[word] &= ~(1L << bit);
+        board[word + 1] &= ~(1L << bit);
+        heights[bit / columnStride]--;
+        if (filledCount < winPly)
+        {
+            winner = 'N';
+        }
+        if (filledCount == 0)
+        {
+            lastColumn = -1;
+            lastRow = -1;
+        }
+        else
+        {
+            int last = moves[filledCount - 1];
+            lastColumn = last / columnStride;
+            lastRow = rowCount - 1 - (last - lastColumn * columnStride);
+        }
+    }
+
+    /**
+     * Check the four lines through a newly placed token, and record the winner if one of them
+     * is long enough. At most 4 * (2 * winLength - 1) - 3 slots are looked at, or, on a board
+     * that fits in one word, none at all unless the word holds a winning line somewhere.
      * 
-     * @param row the row of the token to highlight
-     * @param column the column of the token to highlight
+     * @param column the column of the token.
+     * @param row the row of the token.
      */
-    public void highlightSlot(int row, int column)
+    private void checkWin(int column, int row)
     {
-        getColumn(column).getSlot(row).highlight();
+        int color = isRed(column, row) ? 0 : 1;
+        if (board.length == 2 && !hasLine(board[color]))
+        {
+            return;
+        }
+        if (!checkLine(column, row, color, 0, 1) && !checkLine(column, row, color, 1, 0))
+        {
+            if (!checkLine(column, row, color, 1, 1))
+            {
+                checkLine(column, row, color, 1, -1);
+            }
+        }
     }
     
     /**
-     * Check whether red played first. This is used to confirm the players are alternating correctly.
+     * Count the tokens of one color in a row through a slot, in both directions along a line.
+     * If there are enough to win, record the winner and the line.
      * 
-     * Your agent will not need to use this method.
+     * @param column the column of the token.
+     * @param row the row of the token.
+     * @param color 0 for red, 1 for yellow.
+     * @param columnStep the column direction of the line.
+     * @param rowStep the row direction of the line.
+     * @return true if the line wins the game, false otherwise.
+     */
+    private boolean checkLine(int column, int row, int color, int columnStep, int rowStep)
+    {
+        int reach = winLength - 1; // the most tokens that matter on each side of the new one
+        int back = 0;
+        while (back < reach && hasToken(color, column - (back + 1) * columnStep, row - (back + 1) * rowStep))
+        {
+            back++;
+        }
+        int forward = 0;
+        while (forward < reach && hasToken(color, column + (forward + 1) * columnStep, row + (forward + 1) * rowStep))
+        {
+            forward++;
+        }
+        if (back + forward < reach)
+        {
+            return false;
+        }
+        winner = (color == 0) ? 'R' : 'Y';
+        winColumn = column - back * columnStep;
+        winRow = row - back * rowStep;
+        winColumnStep = columnStep;
+        winRowStep = rowStep;
+        winLineLength = back + forward + 1;
+        return true;
+    }
+
+    /**
+     * Check whether one color's tokens, on a board that fits in one word, hold a winning line
+     * anywhere. The empty sentinel bit at the top of each column stops lines running from one
+     * column into the next.
      * 
-     * @return true if red played first in this game, false otherwise.
+     * @param tokens the bitboard word of one color.
+     * @return true if there is a line of at least winLength tokens.
      */
-    public boolean getRedPlayedFirst()
+    private boolean hasLine(long tokens)
     {
-        return redPlayedFirst;
+        return hasRun(tokens, 1) || hasRun(tokens, columnStride) || hasRun(tokens, columnStride + 1)
+            || hasRun(tokens, columnStride - 1);
+    }
+
+    /**
+     * Check whether a word holds winLength set bits in a row, each the given distance from the
+     * last. Runs are doubled in length with each shift, so only about log2(winLength) shifts
+     * are needed.
+     * 
+     * @param tokens the bitboard word of one color.
+     * @param step the distance between the bits of one slot and the next along a line.
+     * @return true if there is such a run.
+     */
+    private boolean hasRun(long tokens, int step)
+    {
+        if ((long) (winLength - 1) * step >= 64)  // the line cannot fit in the word
+        {
+            return false;
+        }
+        long runs = tokens; // a bit is set where a run of the current length starts
+        int length = 1;
+        while (length * 2 <= winLength)
+        {
+            runs &= runs >>> (length * step);
+            length *= 2;
+        }
+        if (length < winLength) // two overlapping runs of the current length make one of winLength
+        {
+            runs &= runs >>> ((winLength - length) * step);
+        }
+        return runs != 0;
     }
     
     /**
-     * Sets whether red played first. This is used to confirm the players are alternating correctly.
+     * Check if a slot is on the board and holds a token of the given color.
      * 
-     * Your agent will not need to use this method.
+     * @param color 0 for red, 1 for yellow.
+     * @param column the column of the slot.
+     * @param row the row of the slot.
+     * @return true if the slot exists and holds a token of that color.
+     */
+    private boolean hasToken(int color, int column, int row)
+    {
+        if (column < 0 || column >= columnCount || row < 0 || row >= rowCount)
+        {
+            return false;
+        }
+        int bit = bitIndex(column, row);
+        return (board[((bit >>> 6) << 1) + color] & (1L << bit)) != 0;
+    }
+    
+    /**
+     * Get the Zobrist keys for a board size, making them only the first time the size is seen,
+     * so the throwaway games behind Connect4Column and Connect4Slot views cost no more than
+     * their arrays.
      * 
-     * @param redPlayedFirst true if red played first in this game, false otherwise.
+     * @param numCols the number of columns in the game board.
+     * @param numRows the number of rows in the game board.
+     * @param winLength the number of tokens in a row needed to win.
+     * @param bits the number of bits in the bitboard.
+     * @return the keys, shared with every other game of the same size; they must not be changed.
      */
-    public void setRedPlayedFirst(boolean redPlayedFirst)
+    private static long[] cachedZobristKeys(int numCols, int numRows, int winLength, int bits)
     {
-        this.redPlayedFirst = redPlayedFirst;
+        String size = numCols + "x" + numRows + "/" + winLength;
+        long[] keys = ZOBRIST_CACHE.get(size);
+        if (keys == null)
+        {
+            keys = zobristKeys(numCols, numRows, winLength, bits);
+            long[] raced = ZOBRIST_CACHE.putIfAbsent(size, keys);
+            if (raced != null)
+            {
+                keys = raced;   // another thread made the same keys first
+            }
+        }
+        return keys;
+    }
+    
+    /**
+     * Create the Zobrist keys for a board size. The keys come from a SplitMix64 sequence
+     * seeded with the board size and win length, so they are the same in every run, and
+     * positions from games with different win lengths never share keys. The seed for a win
+     * length of four leaves out the win length, so keys saved in books and stores before it
+     * could be changed still match.
+     * 
+     * @param numCols the number of columns in the game board.
+     * @param numRows the number of rows in the game board.
+     * @param winLength the number of tokens in a row needed to win.
+     * @param bits the number of bits in the bitboard.
+     * @return two keys for each bit: one for a red token, then one for a yellow token.
+     */
+    private static long[] zobristKeys(int numCols, int numRows, int winLength, int bits)
+    {
+        long[] keys = new long[bits * 2];
+        long state = ((long) numCols << 32) ^ numRows ^ ((long) (winLength - DEFAULT_WIN_LENGTH) << 48);
+        for (int i = 0; i < keys.length; i++)
+        {
+            state += 0x9E3779B97F4A7C15L;
+            long z = state;
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            keys[i] = z ^ (z >>> 31);
+        }
+        return keys;
+    }
+    
+    /**
+     * Find the position of a slot in the bitboard. Within a column, bits count upwards from
+     * the bottom row; the bit after the top row is the column's empty sentinel.
+     * 
+     * @param column the column of the slot.
+     * @param row the row of the slot, with row 0 at the top of the board.
+     * @return the index of the slot's bit.
+     */
+    private int bitIndex(int column, int row)
+    {
+        return column * columnStride + (rowCount - 1 - row);
+    }
+
+    /**
+     * The read-only view of a game, which only passes reads on to it.
+     */
+    private class View implements BoardView
+    {
+        public int getColumnCount()
+        {
+            return columnCount;
+        }
+
+        public int getRowCount()
+        {
+            return rowCount;
+        }
+
+        public int getWinLength()
+        {
+            return winLength;
+        }
+
+        public boolean isFilled(int column, int row)
+        {
+            return Connect4Game.this.isFilled(column, row);
+        }
+
+        public boolean isRed(int column, int row)
+        {
+            return Connect4Game.this.isRed(column, row);
+        }
+
+        public int height(int column)
+        {
+            return heights[column];
+        }
+
+        public boolean isPlayable(int column)
+        {
+            return Connect4Game.this.isPlayable(column);
+        }
+
+        public int getTokenCount()
+        {
+            return filledCount;
+        }
+
+        public int getLastColumn()
+        {
+            return lastColumn;
+        }
+
+        public long getHash()
+        {
+            return hash;
+        }
+
+        public boolean getRedPlayedFirst()
+        {
+            return redPlayedFirst;
+        }
+
+        public Connect4Game copy()
+        {
+            return new Connect4Game(Connect4Game.this);
+        }
     }
 }
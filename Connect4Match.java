@@ -0,0 +1,159 @@
+/**
+ * Plays one game between two agents, without a window.
+ * 
+ * The game is run the same way Connect4Frame runs it: a Referee has the players take turns
+ * calling move() on boards of their own, and checks every move before playing it on the real
+ * board. A player who makes an invalid move, whose move() throws an exception, or who runs out
+ * of time, forfeits the game to the other player.
+ * 
+ * The match also times every move, so tournaments can report how long each agent takes, and
+ * keeps the game's history as a chain of Connect4Positions.
+ * 
+ * Your agent will not need to use this class.
+ */
+public class Connect4Match
+{
+    private Connect4Game game;  // the real board the game is played on, which the agents never see
+    private Agent redPlayer, yellowPlayer;  // the two players playing the game
+    private long[] moveNanos = new long[2]; // the total time each player has spent moving: [0] for red, [1] for yellow
+    private int[] moveCounts = new int[2];  // the number of moves each player has made
+    private String error;   // why the most recent game ended early, or null if it was played out
+    private Referee referee;    // runs and checks the players' moves, and keeps time
+    private Connect4Position history;   // the latest position of the most recent game, linked back to the first
+
+    /**
+     * Creates a match between two agents, with no time limits.
+     * 
+     * @param game the game itself, which both agents must have been constructed with.
+     * @param redPlayer the agent playing as the red tokens.
+     * @param yellowPlayer the agent playing as the yellow tokens.
+     */
+    public Connect4Match(Connect4Game game, Agent redPlayer, Agent yellowPlayer)
+    {
+        this(game, redPlayer, yellowPlayer, TimeControl.NONE);
+    }
+
+    /**
+     * Creates a match between two agents, with a time control.
+     * 
+     * @param game the game itself, which both agents must have been constructed with.
+     * @param redPlayer the agent playing as the red tokens.
+     * @param yellowPlayer the agent playing as the yellow tokens.
+     * @param timeControl how long the agents may think.
+     */
+    public Connect4Match(Connect4Game game, Agent redPlayer, Agent yellowPlayer, TimeControl timeControl)
+    {
+        this.redPlayer = redPlayer;
+        this.yellowPlayer = yellowPlayer;
+        this.referee = new Referee(game, redPlayer, yellowPlayer, timeControl);
+        this.game = referee.getGame();
+    }
+
+    /**
+     * Clears the board and plays a whole game.
+     * 
+     * @param redFirst true if red moves first.
+     * @return 'R' if red won, 'Y' if yellow won, or 'N' for a draw. A player who breaks the
+     *         rules loses, and getError() says why.
+     */
+    public char play(boolean redFirst)
+    {
+        game.clearBoard();
+        game.setRedPlayedFirst(redFirst);
+        error = null;
+        history = Connect4Position.of(game, redFirst);
+        referee.newGame();
+        try
+        {
+            return playMoves(redFirst);
+        }
+        finally
+        {
+            referee.shutdown();
+        }
+    }
+
+    /**
+     * Plays moves until the game ends.
+     */
+    private char playMoves(boolean redTurn)
+    {
+        while (true)
+        {
+            int side = redTurn ? 0 : 1;
+            String moveResult = referee.move(redTurn);
+            moveNanos[side] += referee.getLastMoveNanos();
+            moveCounts[side]++;
+            if (moveResult.length() > 0)
+            {
+                error = moveResult;
+                return redTurn ? 'Y' : 'R';
+            }
+            history = history.play(game.getLastColumn());
+            char won = game.getWinner();
+            if (won != 'N')
+            {
+                return won;
+            }
+            if (game.boardFull())
+            {
+                return 'N';
+            }
+            redTurn = !redTurn;
+        }
+    }
+
+    /**
+     * Returns why the most recent game ended early.
+     * 
+     * @return the reason a player forfeited, or null if the game was played out.
+     */
+    public String getError()
+    {
+        return error;
+    }
+
+    /**
+     * Returns the most recent game, as its final position. Following getParent() from it
+     * steps back through every position of the game.
+     * 
+     * @return the last valid position of the game, or null if no game has been played.
+     */
+    public Connect4Position getHistory()
+    {
+        return history;
+    }
+
+    /**
+     * Makes a record of the most recent game, for a game archive.
+     * 
+     * @param result what play() returned for the game.
+     * @return the record, with the agents' names and every valid move.
+     */
+    public GameRecord getRecord(char result)
+    {
+        return GameRecord.of(history, redPlayer.getName(), yellowPlayer.getName(), result);
+    }
+
+    /**
+     * Returns how long a player has spent moving, over every game of this match.
+     * 
+     * @param red true for the red player, false for the yellow player.
+     * @return the total time in nanoseconds.
+     */
+    public long getMoveNanos(boolean red)
+    {
+        return moveNanos[red ? 0 : 1];
+    }
+
+    /**
+     * Returns how many moves a player has made, over every game of this match.
+     * 
+     * @param red true for the red player, false for the yellow player.
+     * @return the number of moves.
+     */
+    public int getMoveCount(boolean red)
+    {
+        return moveCounts[red ? 0 : 1];
+    }
+}
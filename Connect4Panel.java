@@ -1,18 +1,34 @@
 import javax.swing.*;
 import java.awt.*;
+import java.awt.image.BufferedImage;
 
 /**
  * The panel for displaying the current status of the game itself.
  * 
+ * The board scales to fill the panel. The empty board is drawn once for each panel size and
+ * kept as an image, as are a red token, a yellow token and a highlight ring at the current slot
+ * size, so painting is only copying images. The panel remembers what is in every slot, and when
+ * it is given a new board only the slots that have changed are repainted.
+ * 
  * You should not modify this class, and your agent should not need to access the methods within
  * it directly.
  */
 public class Connect4Panel extends JPanel
 {
-    private Connect4Game myGame;    // the game to display
+    private static final int SLOT_DIAMETER = 75;    // size of the individual slots at the preferred panel size
+    private static final int SLOT_SPACING = 10; // space between slots at the preferred panel size
+    private static final int RED = 1, YELLOW = 2, HIGHLIGHTED = 4;  // the parts of a slot's state; 0 is an empty slot
+
+    private int columnCount, rowCount;  // the size of the board being displayed
+    private int[] slotStates;   // what is in each slot (column * rows + row): RED or YELLOW, plus HIGHLIGHTED
+    private Rectangle changed;  // the part of the panel holding slots changed since the last repaintChanges(), or null
     private int slotDiameter;  // size of the individual slots
     private int slotSpacing; // space between slots
-    
+    private int left, top;  // the top-left corner of the board, which is centred in the panel
+    private int layoutWidth = -1, layoutHeight = -1;    // the panel size the images were made for
+    private Image background;   // the whole panel with every slot empty
+    private Image redToken, yellowToken, highlight; // a single slot of each kind, slotDiameter across
+
     /**
      * Creates a new Connect4Panel with a given game.
      * 
@@ -23,68 +39,113 @@ public class Connect4Panel extends JPanel
     public Connect4Panel(Connect4Game game)
     {
         super();
-        this.myGame = game;
-        
-        this.slotDiameter = 75;
-        this.slotSpacing = 10;
-        
-        final int WIDTH = 605;
-        final int HEIGHT = 520;
-        this.setPreferredSize(new Dimension(WIDTH, HEIGHT));
+        setGame(game);
     }
-    
+
     /**
-     * Paints the current status of the game.
+     * Changes the game to display. Only the slots that differ from the game shown before are
+     * marked to be repainted, and nothing is repainted until repaintChanges() is called.
      * 
      * Your agent will not need to use this method.
      * 
-     * @param g the graphics object with which to paint.
+     * @param game the game to display, which must not be changed while the panel shows it.
      */
-    public void paint(Graphics g)
+    public void setGame(Connect4Game game)
     {
-        Graphics2D g2 = (Graphics2D) g;
-        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-        g2.setColor(Color.BLUE);
-        g2.fillRect(0, 0, getWidth(), getHeight());
-        
-        for (int i = 0; i < myGame.getColumnCount(); i++)
+        if (game.getColumnCount() != columnCount || game.getRowCount() != rowCount)
+        {
+            columnCount = game.getColumnCount();
+            rowCount = game.getRowCount();
+            slotStates = new int[columnCount * rowCount];
+            setPreferredSize(new Dimension(columnCount * (SLOT_DIAMETER + SLOT_SPACING) + SLOT_SPACING,
+                rowCount * (SLOT_DIAMETER + SLOT_SPACING) + SLOT_SPACING));
+            layoutWidth = -1;
+            changed = new Rectangle(0, 0, getWidth(), getHeight());
+        }
+        for (int i = 0; i < columnCount; i++)
         {
-            for (int j = 0; j < myGame.getRowCount(); j++)
+            for (int j = 0; j < rowCount; j++)
             {
-                Connect4Column column = myGame.getColumn(i);
-                Connect4Slot currentSlot = column.getSlot(j);
-                Color color;
-                if(!currentSlot.getIsFilled())
-                {
-                    color=Color.WHITE;
-                }
-                else
+                int state = 0;
+                if (game.isFilled(i, j))
                 {
-                    if (currentSlot.getIsRed())
+                    state = game.isRed(i, j) ? RED : YELLOW;
+                    if (game.isHighlighted(i, j))
                     {
-                        color = Color.RED;
-                    }
-                    else
-                    {
-                        color = Color.YELLOW;
+                        state |= HIGHLIGHTED;
                     }
                 }
-                int x = ((i + 1) * slotSpacing) + (i * slotDiameter);
-                int y = ((j + 1) * slotSpacing) + (j * slotDiameter);
-                drawSlot(g2, x, y, color);
-                if (currentSlot.getIsHighlighted())
+                if (state != slotStates[i * rowCount + j])
                 {
-                    drawHighlight(g2, x, y);
+                    slotStates[i * rowCount + j] = state;
+                    Rectangle slot = slotBounds(i, j);
+                    changed = changed == null ? slot : changed.union(slot);
                 }
             }
         }
     }
-    
+
+    /**
+     * Repaints the slots that have changed since this was last called, if any.
+     * 
+     * Your agent will not need to use this method.
+     */
+    public void repaintChanges()
+    {
+        if (changed != null)
+        {
+            repaint(changed);
+            changed = null;
+        }
+    }
+
+    /**
+     * Paints the current status of the game: the empty board, then the tokens and highlights
+     * in the slots that need repainting.
+     * 
+     * Your agent will not need to use this method.
+     * 
+     * @param g the graphics object with which to paint.
+     */
+    protected void paintComponent(Graphics g)
+    {
+        layOut();
+        g.drawImage(background, 0, 0, null);
+        Rectangle clip = g.getClipBounds();
+        if (clip == null)
+        {
+            clip = new Rectangle(0, 0, getWidth(), getHeight());
+        }
+        int step = slotDiameter + slotSpacing;
+        int firstColumn = Math.max(0, (clip.x - left) / step - 1);
+        int lastColumn = Math.min(columnCount - 1, (clip.x + clip.width - left) / step);
+        int firstRow = Math.max(0, (clip.y - top) / step - 1);
+        int lastRow = Math.min(rowCount - 1, (clip.y + clip.height - top) / step);
+        for (int i = firstColumn; i <= lastColumn; i++)
+        {
+            for (int j = firstRow; j <= lastRow; j++)
+            {
+                int state = slotStates[i * rowCount + j];
+                if (state == 0)
+                {
+                    continue;
+                }
+                int x = left + ((i + 1) * slotSpacing) + (i * slotDiameter);
+                int y = top + ((j + 1) * slotSpacing) + (j * slotDiameter);
+                g.drawImage((state & RED) != 0 ? redToken : yellowToken, x, y, null);
+                if ((state & HIGHLIGHTED) != 0)
+                {
+                    g.drawImage(highlight, x, y, null);
+                }
+            }
+        }
+    }
+
     /**
      * Draw a single slot.
      * 
      * Your agent will not need to use this method.
-     *
+     * 
      * @param g2 the graphics object with which to paint.
      * @param x the top-left x-coordinate where to draw the slot.
      * @param y the top-left y-coordinate where to draw the slot.
@@ -96,20 +157,115 @@ public class Connect4Panel extends JPanel
         g2.fillOval(x, y, slotDiameter, slotDiameter);
     }
     /**
-     * Highlight a slot.
+     * Highlight a slot. The ring stays inside the slot, so repainting the slot covers it.
      * 
      * Your agent will not need to use this method.
-     *
+     * 
      * @param g2 the graphics object with which to paint.
      * @param x the top-left x-coordinate where to draw the highlight.
      * @param y the top-left y-coordinate where to draw the highlight.
      */
     public void drawHighlight(Graphics2D g2, int x, int y)
     {
+        float width = Math.max(1.0f, 10.0f * slotDiameter / SLOT_DIAMETER);
+        int inset = (int) Math.ceil(width / 2);
         Stroke save = g2.getStroke();
-        g2.setStroke(new BasicStroke(10.0f));
+        g2.setStroke(new BasicStroke(width));
         g2.setColor(Color.GREEN);
-        g2.drawOval(x + 4, y + 4, slotDiameter - 8, slotDiameter - 8);
+        g2.drawOval(x + inset, y + inset, slotDiameter - 2 * inset, slotDiameter - 2 * inset);
         g2.setStroke(save);
     }
+
+    /**
+     * Works out the slot size and the board's position for the panel's current size, and
+     * redraws the cached images if they were made for another size.
+     */
+    private void layOut()
+    {
+        int width = getWidth() > 0 ? getWidth() : getPreferredSize().width;
+        int height = getHeight() > 0 ? getHeight() : getPreferredSize().height;
+        if (width == layoutWidth && height == layoutHeight)
+        {
+            return;
+        }
+        layoutWidth = width;
+        layoutHeight = height;
+        int base = SLOT_DIAMETER + SLOT_SPACING;
+        int step = Math.min(width * base / (columnCount * base + SLOT_SPACING),
+            height * base / (rowCount * base + SLOT_SPACING));
+        step = Math.max(step, 2);
+        slotSpacing = Math.max(1, step * SLOT_SPACING / base);
+        slotDiameter = step - slotSpacing;
+        left = (width - (columnCount * step + slotSpacing)) / 2;
+        top = (height - (rowCount * step + slotSpacing)) / 2;
+
+        background = newImage(width, height, Transparency.OPAQUE);
+        Graphics2D g2 = startDrawing(background);
+        g2.setColor(Color.BLUE);
+        g2.fillRect(0, 0, width, height);
+        for (int i = 0; i < columnCount; i++)
+        {
+            for (int j = 0; j < rowCount; j++)
+            {
+                drawSlot(g2, left + ((i + 1) * slotSpacing) + (i * slotDiameter),
+                    top + ((j + 1) * slotSpacing) + (j * slotDiameter), Color.WHITE);
+            }
+        }
+        g2.dispose();
+        redToken = token(Color.RED);
+        yellowToken = token(Color.YELLOW);
+        highlight = newImage(slotDiameter, slotDiameter, Transparency.TRANSLUCENT);
+        g2 = startDrawing(highlight);
+        drawHighlight(g2, 0, 0);
+        g2.dispose();
+    }
+
+    /**
+     * Draws one filled slot on its square of the board's blue, so it covers the empty slot
+     * exactly.
+     */
+    private Image token(Color color)
+    {
+        Image image = newImage(slotDiameter, slotDiameter, Transparency.OPAQUE);
+        Graphics2D g2 = startDrawing(image);
+        g2.setColor(Color.BLUE);
+        g2.fillRect(0, 0, slotDiameter, slotDiameter);
+        drawSlot(g2, 0, 0, color);
+        g2.dispose();
+        return image;
+    }
+
+    /**
+     * Makes an image in the screen's own pixel format where possible, so it is quick to copy.
+     */
+    private Image newImage(int width, int height, int transparency)
+    {
+        GraphicsConfiguration config = getGraphicsConfiguration();
+        if (config != null)
+        {
+            return config.createCompatibleImage(width, height, transparency);
+        }
+        return new BufferedImage(width, height,
+            transparency == Transparency.OPAQUE ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+    }
+
+    /**
+     * Gets an antialiased graphics object for drawing on an image.
+     */
+    private Graphics2D startDrawing(Image image)
+    {
+        Graphics2D g2 = (Graphics2D) image.getGraphics();
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        return g2;
+    }
+
+    /**
+     * Finds the part of the panel a slot covers, at the current size.
+     */
+    private Rectangle slotBounds(int column, int row)
+    {
+        layOut();
+        return new Rectangle(left + ((column + 1) * slotSpacing) + (column * slotDiameter),
+            top + ((row + 1) * slotSpacing) + (row * slotDiameter), slotDiameter, slotDiameter);
+    }
 }
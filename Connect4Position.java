@@ -0,0 +1,399 @@
+/**
+ * An immutable position in a game of Connect 4, for keeping a game's whole history.
+ * 
+ * Playing a move from a position gives a new position and leaves the old one as it was. The
+ * new position shares everything it can with the old one: the columns are kept in a small
+ * balanced tree, and a move copies only the column it changes and the few tree nodes above it.
+ * A game's history can be kept as a chain of positions, each knowing its parent, in memory
+ * proportional to the number of moves times the height of a column, instead of a full copy of
+ * the board for every move. Stepping back is just following the chain to the parent.
+ * 
+ * A position can be made from a Connect4Game, and turned back into one.
+ * 
+ * Your agent MAY use this class to keep track of positions it has looked at.
+ */
+public final class Connect4Position
+{
+    private final Connect4Game origin;  // a private copy of the game the first position of the chain was made from
+    private final Connect4Position parent;  // the position before the last move, or null for the first position
+    private final int lastColumn;   // the column of the last move, or -1 for the first position
+    private final Node columns; // the columns, as a tree
+    private final int columnCount;
+    private final int rowCount;
+    private final int tokenCount;   // the number of tokens on the board
+    private final int ply;  // the number of moves since the first position of the chain
+    private final long hash;    // the same Zobrist key Connect4Game.getHash() would give
+    private final char winner;  // 'R' or 'Y' if someone has won, 'N' otherwise
+    private final boolean redToMove;
+
+    /**
+     * A node of the column tree. A leaf holds one column: its tokens as bits, in pairs of
+     * longs for each 64 slots (red, then yellow), counting up from the bottom of the column.
+     * Any other node just joins two subtrees.
+     */
+    private static final class Node
+    {
+        final Node left, right; // the two halves of the columns below an inner node; null in a leaf
+        final long[] bits;  // the tokens of a leaf; null in an inner node
+        final int height;   // the number of tokens in a leaf's column
+
+        Node(Node left, Node right)
+        {
+            this.left = left;
+            this.right = right;
+            this.bits = null;
+            this.height = 0;
+        }
+
+        Node(long[] bits, int height)
+        {
+            this.left = null;
+            this.right = null;
+            this.bits = bits;
+            this.height = height;
+        }
+    }
+
+    /**
+     * Makes a position from a game. The game is copied, so later changes to it do not affect
+     * the position.
+     * 
+     * @param game the game.
+     * @param redToMove true if red is to move.
+     * @return the position.
+     */
+    public static Connect4Position of(Connect4Game game, boolean redToMove)
+    {
+        return new Connect4Position(new Connect4Game(game), redToMove);
+    }
+
+    /**
+     * Makes the first position of a chain.
+     */
+    private Connect4Position(Connect4Game origin, boolean redToMove)
+    {
+        this.origin = origin;
+        this.parent = null;
+        this.lastColumn = -1;
+        this.columnCount = origin.getColumnCount();
+        this.rowCount = origin.getRowCount();
+        this.columns = build(origin, 0, columnCount);
+        this.tokenCount = origin.getTokenCount();
+        this.ply = 0;
+        this.hash = origin.getHash();
+        this.winner = origin.getWinner();
+        this.redToMove = redToMove;
+    }
+
+    /**
+     * Makes the position after a move, working out whether the move won.
+     */
+    private Connect4Position(Connect4Position parent, int column, int row, Node columns, long hash)
+    {
+        this.origin = parent.origin;
+        this.parent = parent;
+        this.lastColumn = column;
+        this.columnCount = parent.columnCount;
+        this.rowCount = parent.rowCount;
+        this.columns = columns;
+        this.tokenCount = parent.tokenCount + 1;
+        this.ply = parent.ply + 1;
+        this.hash = hash;
+        this.redToMove = !parent.redToMove;
+        this.winner = makesLine(column, row, parent.redToMove) ? (parent.redToMove ? 'R' : 'Y') : 'N';
+    }
+
+    /**
+     * Plays a move for the player to move.
+     * 
+     * @param column the column to drop a token in.
+     * @return the new position, or null if the column is full or does not exist, or the game
+     *         is already won.
+     */
+    public Connect4Position play(int column)
+    {
+        if (winner != 'N' || column < 0 || column >= columnCount)
+        {
+            return null;
+        }
+        Node leaf = leaf(column);
+        if (leaf.height >= rowCount)
+        {
+            return null;
+        }
+        long[] bits = leaf.bits.clone();
+        int slot = leaf.height;
+        bits[((slot >>> 6) << 1) + (redToMove ? 0 : 1)] |= 1L << slot;
+        Node tree = replace(columns, 0, columnCount, column, new Node(bits, slot + 1));
+        int row = rowCount - 1 - slot;
+        return new Connect4Position(this, column, row, tree, hash ^ origin.tokenKey(column, row, redToMove));
+    }
+
+    /**
+     * Makes a Connect4Game of this position. The game's moves can be undone back to the
+     * game this chain of positions was first made from.
+     * 
+     * @return a new game.
+     */
+    public Connect4Game toGame()
+    {
+        Connect4Game game = new Connect4Game(origin);
+        int[] path = new int[ply];
+        Connect4Position p = this;
+        for (int i = ply - 1; i >= 0; i--)
+        {
+            path[i] = p.lastColumn;
+            p = p.parent;
+        }
+        boolean red = p.redToMove;
+        for (int column : path)
+        {
+            game.drop(column, red);
+            red = !red;
+        }
+        return game;
+    }
+
+    /**
+     * Returns the position before the last move.
+     * 
+     * @return the parent, or null if this is the first position of the chain.
+     */
+    public Connect4Position getParent()
+    {
+        return parent;
+    }
+
+    /**
+     * Returns the column of the last move.
+     * 
+     * @return the column, or -1 if this is the first position of the chain.
+     */
+    public int getLastColumn()
+    {
+        return lastColumn;
+    }
+
+    /**
+     * Returns the number of moves since the first position of the chain.
+     * 
+     * @return the number of moves.
+     */
+    public int getPly()
+    {
+        return ply;
+    }
+
+    /**
+     * Returns whether red is to move.
+     * 
+     * @return true if red is to move, false if yellow is.
+     */
+    public boolean isRedToMove()
+    {
+        return redToMove;
+    }
+
+    /**
+     * Returns who has won.
+     * 
+     * @return 'R' if red has won, 'Y' if yellow has won, or 'N' if nobody has yet.
+     */
+    public char getWinner()
+    {
+        return winner;
+    }
+
+    /**
+     * Returns the Zobrist key of the tokens on the board, the same as Connect4Game.getHash()
+     * would give for this position.
+     * 
+     * @return the key.
+     */
+    public long getHash()
+    {
+        return hash;
+    }
+
+    /**
+     * Returns the number of tokens on the board.
+     * 
+     * @return the number of tokens.
+     */
+    public int getTokenCount()
+    {
+        return tokenCount;
+    }
+
+    /**
+     * Returns whether every slot is filled.
+     * 
+     * @return true if the board is full.
+     */
+    public boolean boardFull()
+    {
+        return tokenCount == columnCount * rowCount;
+    }
+
+    /**
+     * Returns the number of columns in the board.
+     * 
+     * @return the number of columns.
+     */
+    public int getColumnCount()
+    {
+        return columnCount;
+    }
+
+    /**
+     * Returns the number of rows in the board.
+     * 
+     * @return the number of rows.
+     */
+    public int getRowCount()
+    {
+        return rowCount;
+    }
+
+    /**
+     * Returns the number of tokens in a row needed to win.
+     * 
+     * @return the win length.
+     */
+    public int getWinLength()
+    {
+        return origin.getWinLength();
+    }
+
+    /**
+     * Returns the number of tokens in a column.
+     * 
+     * @param column the column.
+     * @return the number of tokens.
+     */
+    public int height(int column)
+    {
+        return leaf(column).height;
+    }
+
+    /**
+     * Returns whether a slot holds a token.
+     * 
+     * @param column the column of the slot.
+     * @param row the row of the slot, with row 0 at the top of the board.
+     * @return true if the slot is filled.
+     */
+    public boolean isFilled(int column, int row)
+    {
+        long[] bits = leaf(column).bits;
+        int slot = rowCount - 1 - row;
+        int word = (slot >>> 6) << 1;
+        return ((bits[word] | bits[word + 1]) & (1L << slot)) != 0;
+    }
+
+    /**
+     * Returns whether a slot holds a red token.
+     * 
+     * @param column the column of the slot.
+     * @param row the row of the slot, with row 0 at the top of the board.
+     * @return true if the slot holds a red token, false if it holds a yellow one or is empty.
+     */
+    public boolean isRed(int column, int row)
+    {
+        int slot = rowCount - 1 - row;
+        return (leaf(column).bits[(slot >>> 6) << 1] & (1L << slot)) != 0;
+    }
+
+    /**
+     * Builds the part of the column tree for columns from first up to (not including) last.
+     */
+    private static Node build(Connect4Game game, int first, int last)
+    {
+        if (last - first == 1)
+        {
+            int rows = game.getRowCount();
+            long[] bits = new long[((rows + 63) >>> 6) << 1];
+            for (int k = 0; k < bits.length; k += 2)
+            {
+                bits[k] = game.columnBits(first, (k >>> 1) << 6, true);
+                bits[k + 1] = game.columnBits(first, (k >>> 1) << 6, false);
+            }
+            return new Node(bits, game.height(first));
+        }
+        int middle = (first + last) >>> 1;
+        return new Node(build(game, first, middle), build(game, middle, last));
+    }
+
+    /**
+     * Copies the path from a subtree down to one column, with that column's leaf replaced.
+     */
+    private static Node replace(Node node, int first, int last, int column, Node leaf)
+    {
+        if (last - first == 1)
+        {
+            return leaf;
+        }
+        int middle = (first + last) >>> 1;
+        return column < middle ? new Node(replace(node.left, first, middle, column, leaf), node.right)
+            : new Node(node.left, replace(node.right, middle, last, column, leaf));
+    }
+
+    /**
+     * Finds the leaf of a column.
+     */
+    private Node leaf(int column)
+    {
+        Node node = columns;
+        int first = 0, last = columnCount;
+        while (last - first > 1)
+        {
+            int middle = (first + last) >>> 1;
+            if (column < middle)
+            {
+                node = node.left;
+                last = middle;
+            }
+            else
+            {
+                node = node.right;
+                first = middle;
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Checks whether the token in a slot is part of a winning line of its color.
+     */
+    private boolean makesLine(int column, int row, boolean red)
+    {
+        int[][] directions = {{1, 0}, {0, 1}, {1, 1}, {1, -1}};
+        for (int[] d : directions)
+        {
+            int length = 1 + countFrom(column, row, d[0], d[1], red) + countFrom(column, row, -d[0], -d[1], red);
+            if (length >= origin.getWinLength())
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Counts the tokens of a color in a row from a slot, not counting the slot itself.
+     */
+    private int countFrom(int column, int row, int columnStep, int rowStep, boolean red)
+    {
+        int count = 0;
+        for (int k = 1; k < origin.getWinLength(); k++)
+        {
+            int c = column + k * columnStep, r = row + k * rowStep;
+            if (c < 0 || c >= columnCount || r < 0 || r >= rowCount || !isFilled(c, r) || isRed(c, r) != red)
+            {
+                break;
+            }
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,532 @@
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * An iterative-deepening negamax search with alpha-beta pruning.
+ * 
+ * The search works on its own copy of the game, trying moves with drop() and taking them back
+ * with undo(). It searches one ply deeper at a time until it runs out of time or nodes, and
+ * always answers with the best move of the last depth it finished, so it never runs over its
+ * budget by more than the time it takes to notice.
+ * 
+ * While a Java Flight Recorder recording is running, each depth the search finishes is recorded
+ * for it (see FlightEvents).
+ * 
+ * Your agent MAY use this class to choose its moves.
+ */
+public class Connect4Search
+{
+    public static final int WIN_SCORE = 10000;  // the score of a win on the next move; later wins score less
+    private static final int WIN_THRESHOLD = WIN_SCORE - 1000;  // scores above this are wins
+    private static final int EVAL_LIMIT = WIN_THRESHOLD - 1;    // positions that are not won never score more than this
+    private static final int CHECK_INTERVAL = 1023; // how many nodes to search between checks of the clock
+
+    private TranspositionTable table;   // results of earlier searches, shared between moves
+    private long timeLimit; // the most time a search may take, in milliseconds; 0 for no limit
+    private long nodeLimit; // the most nodes a search may visit; 0 for no limit
+    private int maxDepth;   // the deepest a search may go; 0 to go until the board is full
+    private int startDepth = 1; // the first depth of the iterative deepening
+    private AtomicBoolean stopSignal;   // set by another thread to stop the search early; may be null
+    private boolean helper; // whether this is a helper of a parallel search, which leaves the table's age alone
+
+    private Connect4Game game;  // the private copy of the game being searched
+    private MoveOrderer orderer;    // decides which order moves are tried in
+    private int[][] moveLists;  // the ordered moves at each ply, so no arrays are made during the search
+    private WindowEvaluator evaluator;  // scores positions, kept up to date as moves are tried
+    private long deadline;  // when the current search must stop, in System.nanoTime() terms
+    private long nodes; // the number of nodes visited in the current search
+    private long tableProbes, tableHits;    // transposition table lookups in the current search, and how many found an entry
+    private boolean stopped;    // whether the current search ran out of time or nodes
+
+    private int bestMove;   // the best move of the last finished depth
+    private int bestScore;  // the score of that move
+    private int depthReached;   // the last depth that was finished
+    private long elapsedNanos;  // how long the last search took
+
+    /**
+     * Creates a new search.
+     * 
+     * @param table the transposition table to use; it may be shared with other searches.
+     */
+    public Connect4Search(TranspositionTable table)
+    {
+        this.table = table;
+    }
+
+    /**
+     * Sets the most time a search may take.
+     * 
+     * @param millis the time limit in milliseconds, or 0 for no limit.
+     */
+    public void setTimeLimit(long millis)
+    {
+        this.timeLimit = millis;
+    }
+
+    /**
+     * Sets the most nodes a search may visit.
+     * 
+     * @param nodes the node limit, or 0 for no limit.
+     */
+    public void setNodeLimit(long nodes)
+    {
+        this.nodeLimit = nodes;
+    }
+
+    /**
+     * Sets the deepest a search may go.
+     * 
+     * @param depth the depth limit in plies, or 0 to search until the board is full.
+     */
+    public void setMaxDepth(int depth)
+    {
+        this.maxDepth = depth;
+    }
+
+    /**
+     * Sets the first depth to search. Helper threads of a parallel search start at different
+     * depths so that they do not all search the same tree in step.
+     * 
+     * @param depth the first depth, at least 1.
+     */
+    public void setStartDepth(int depth)
+    {
+        this.startDepth = Math.max(1, depth);
+    }
+
+    /**
+     * Sets a flag that another thread can raise to stop the search. When it is raised the
+     * search stops as if it had run out of time.
+     * 
+     * @param stopSignal the flag, or null for none.
+     */
+    public void setStopSignal(AtomicBoolean stopSignal)
+    {
+        this.stopSignal = stopSignal;
+    }
+
+    /**
+     * Marks this search as a helper of a parallel search. The main search starts a new
+     * generation of the shared transposition table for each move; helpers must not, or the
+     * entries written during the same move would look out of date to each other.
+     * 
+     * @param helper true for a helper search.
+     */
+    public void setHelper(boolean helper)
+    {
+        this.helper = helper;
+    }
+
+    /**
+     * Sets the move orderer to use. If it does not match the size of the board being searched,
+     * a default MoveOrderer is used instead.
+     * 
+     * @param orderer the move orderer.
+     */
+    public void setMoveOrderer(MoveOrderer orderer)
+    {
+        this.orderer = orderer;
+    }
+
+    /**
+     * Finds the best move in a position. The position must have at least one open column.
+     * 
+     * @param position the game to search; it is copied, not changed.
+     * @param red true if red is to move, false if yellow is to move.
+     * @return the column to play.
+     */
+    public int search(Connect4Game position, boolean red)
+    {
+        long start = System.nanoTime();
+        begin(position, start);
+        if (!helper)
+        {
+            table.newSearch();
+        }
+        orderer.newSearch();
+
+        int empty = game.getColumnCount() * game.getRowCount() - game.getTokenCount();
+        int lastDepth = maxDepth > 0 ? Math.min(maxDepth, empty) : empty;
+        for (int depth = Math.min(startDepth, lastDepth); depth <= lastDepth; depth++)
+        {
+            Object iterationEvent = FlightEvents.SEARCH_ITERATION.begin();
+            long nodesBefore = nodes;
+            int move = searchRoot(depth, red, -WIN_SCORE - 1, WIN_SCORE + 1);
+            if (stopped)
+            {
+                break;
+            }
+            bestMove = move;
+            depthReached = depth;
+            if (iterationEvent != null)
+            {
+                FlightEvents.SEARCH_ITERATION.commit(iterationEvent, depth, nodes - nodesBefore, bestScore, move, helper);
+            }
+            if (Math.abs(bestScore) > WIN_THRESHOLD)    // the result is already certain
+            {
+                break;
+            }
+        }
+        elapsedNanos = System.nanoTime() - start;
+        return bestMove;
+    }
+
+    /**
+     * Searches a position once, to a fixed depth and within a window, without iterative
+     * deepening. This is for callers that drive the search themselves, such as a solver making
+     * null-window tests. Unlike search(), it keeps the table's age and the move orderer's
+     * history, since the calls usually all belong to one larger search.
+     * 
+     * The result is "fail-soft": a score at or below alpha is an upper bound on the true score,
+     * one at or above beta is a lower bound, and one in between is exact. Searched to the
+     * number of empty slots, every score is the exact game-theoretic value.
+     * 
+     * @param position the game to search; it is copied, not changed.
+     * @param red true if red is to move, false if yellow is to move.
+     * @param depth the depth to search, in plies.
+     * @param alpha the lower end of the window.
+     * @param beta the upper end of the window.
+     * @return the score, from the point of view of the player to move.
+     */
+    public int searchWindow(Connect4Game position, boolean red, int depth, int alpha, int beta)
+    {
+        long start = System.nanoTime();
+        begin(position, start);
+        int move = searchRoot(depth, red, alpha, beta);
+        if (!stopped)
+        {
+            bestMove = move;
+            depthReached = depth;
+        }
+        elapsedNanos = System.nanoTime() - start;
+        return bestScore;
+    }
+
+    /**
+     * Returns the move chosen by the most recent search.
+     * 
+     * @return the column.
+     */
+    public int getBestMove()
+    {
+        return bestMove;
+    }
+
+    /**
+     * Returns whether the most recent search ran out of time or nodes, or was told to stop,
+     * before it finished.
+     * 
+     * @return true if the search was cut short.
+     */
+    public boolean wasStopped()
+    {
+        return stopped;
+    }
+
+    /**
+     * Returns the last depth the most recent search finished.
+     * 
+     * @return the depth in plies.
+     */
+    public int getDepth()
+    {
+        return depthReached;
+    }
+
+    /**
+     * Returns the score of the move chosen by the most recent search, from the point of view
+     * of the player to move. Wins score above WIN_SCORE - 1000 and losses below -(WIN_SCORE - 1000).
+     * 
+     * @return the score.
+     */
+    public int getScore()
+    {
+        return bestScore;
+    }
+
+    /**
+     * Returns the number of nodes the most recent search visited.
+     * 
+     * @return the number of nodes.
+     */
+    public long getNodes()
+    {
+        return nodes;
+    }
+
+    /**
+     * Returns the number of transposition table lookups the most recent search made.
+     * 
+     * @return the number of lookups.
+     */
+    public long getTableProbes()
+    {
+        return tableProbes;
+    }
+
+    /**
+     * Returns the number of transposition table lookups in the most recent search that found
+     * an entry for the position.
+     * 
+     * @return the number of hits.
+     */
+    public long getTableHits()
+    {
+        return tableHits;
+    }
+
+    /**
+     * Returns how fast the most recent search went.
+     * 
+     * @return the number of nodes visited per second.
+     */
+    public long getNodesPerSecond()
+    {
+        return elapsedNanos > 0 ? nodes * 1000000000L / elapsedNanos : 0;
+    }
+
+    /**
+     * Describes the most recent search, for printing.
+     * 
+     * @return the depth, score, nodes and speed of the search.
+     */
+    public String getReport()
+    {
+        return "depth " + depthReached + ", score " + bestScore + ", " + nodes + " nodes in "
+            + (elapsedNanos / 1000000) + " ms (" + getNodesPerSecond() + " nodes/s)";
+    }
+
+    /**
+     * Copies the position and works out the tables for its board size.
+     */
+    private void prepare(Connect4Game position)
+    {
+        int columns = position.getColumnCount();
+        int rows = position.getRowCount();
+        if (game == null || game.getColumnCount() != columns || game.getRowCount() != rows
+            || game.getWinLength() != position.getWinLength())
+        {
+            evaluator = new WindowEvaluator(columns, rows, position.getWinLength());
+            moveLists = new int[columns * rows + 1][columns];
+        }
+        if (orderer == null || orderer.columnCount != columns || orderer.rowCount != rows)
+        {
+            orderer = new MoveOrderer(columns, rows);
+        }
+        game = new Connect4Game(position);
+        evaluator.reset(game);
+    }
+
+    /**
+     * Resets the counters, copies the position, and picks a legal move to fall back on.
+     */
+    private void begin(Connect4Game position, long start)
+    {
+        deadline = start + timeLimit * 1000000L;
+        nodes = 0;
+        tableProbes = 0;
+        tableHits = 0;
+        stopped = false;
+        prepare(position);
+
+        bestMove = -1;
+        bestScore = 0;
+        depthReached = 0;
+        for (int c : orderer.getCenterOrder()) // until a depth is finished, any legal move will do
+        {
+            if (game.isPlayable(c))
+            {
+                bestMove = c;
+                break;
+            }
+        }
+    }
+
+    /**
+     * Searches every move at the root to the given depth, within a window.
+     * 
+     * @return the best column found; bestScore is set to its score.
+     */
+    private int searchRoot(int depth, boolean red, int alpha, int beta)
+    {
+        int best = -WIN_SCORE - 1;
+        int move = bestMove;
+        int[] moves = moveLists[0];
+        int count = orderer.order(moves, game, 0, red, bestMove);    // the previous depth's best move goes first
+        for (int k = 0; k < count; k++)
+        {
+            int c = moves[k];
+            int score = tryMove(c, red, depth, alpha, beta, 0);
+            if (stopped)
+            {
+                return move;
+            }
+            if (score > best)
+            {
+                best = score;
+                if (score > alpha)
+                {
+                    alpha = score;
+                    move = c;
+                    if (alpha >= beta)
+                    {
+                        break;
+                    }
+                }
+            }
+        }
+        bestScore = best;
+        return move;
+    }
+
+    /**
+     * Plays a move, scores the resulting position for the player who moved, and takes the move back.
+     */
+    private int tryMove(int column, boolean red, int depth, int alpha, int beta, int ply)
+    {
+        int row = game.drop(column, red);
+        evaluator.drop(column, row, red);
+        int score;
+        if (game.getWinner() != 'N')
+        {
+            score = WIN_SCORE - ply;
+        }
+        else
+        {
+            score = -negamax(depth - 1, -beta, -alpha, ply + 1, !red);
+        }
+        evaluator.undo(column, row, red);
+        game.undo();
+        return score;
+    }
+
+    /**
+     * Scores the current position for the player to move.
+     * 
+     * @param depth how many more plies to search.
+     * @param alpha the score the player to move is already sure of.
+     * @param beta the score the opponent is already sure of.
+     * @param ply how many plies from the root this position is.
+     * @param red true if red is to move.
+     * @return the score of the position.
+     */
+    private int negamax(int depth, int alpha, int beta, int ply, boolean red)
+    {
+        nodes++;
+        if ((nodes & CHECK_INTERVAL) == 0)
+        {
+            checkLimits();
+        }
+        if (stopped)
+        {
+            return 0;
+        }
+        if (game.boardFull())
+        {
+            return 0;
+        }
+        if (depth <= 0)
+        {
+            return Math.max(-EVAL_LIMIT, Math.min(EVAL_LIMIT, evaluator.evaluate(red)));
+        }
+
+        int alphaStart = alpha;
+        int hashMove = TranspositionTable.NO_MOVE;
+        long key = OpeningBook.key(game, red);  // the same tokens can come up with either player to move
+        long entry = table.probe(key);
+        tableProbes++;
+        if (entry != 0)
+        {
+            tableHits++;
+            hashMove = TranspositionTable.getMove(entry);
+            if (TranspositionTable.getDepth(entry) >= depth)
+            {
+                int score = fromTable(TranspositionTable.getScore(entry), ply);
+                int bound = TranspositionTable.getBound(entry);
+                if (bound == TranspositionTable.EXACT
+                    || (bound == TranspositionTable.LOWER_BOUND && score >= beta)
+                    || (bound == TranspositionTable.UPPER_BOUND && score <= alpha))
+                {
+                    return score;
+                }
+            }
+        }
+
+        int best = -WIN_SCORE - 1;
+        int bestColumn = TranspositionTable.NO_MOVE;
+        int[] moves = moveLists[ply];
+        int count = orderer.order(moves, game, ply, red, hashMove);
+        for (int k = 0; k < count; k++)
+        {
+            int c = moves[k];
+            int score = tryMove(c, red, depth, alpha, beta, ply);
+            if (stopped)
+            {
+                return 0;
+            }
+            if (score > best)
+            {
+                best = score;
+                bestColumn = c;
+                if (score > alpha)
+                {
+                    alpha = score;
+                    if (alpha >= beta)
+                    {
+                        orderer.recordCutoff(c, game.height(c), ply, red, depth);
+                        break;
+                    }
+                }
+            }
+        }
+
+        int bound = (best <= alphaStart) ? TranspositionTable.UPPER_BOUND
+            : (best >= beta) ? TranspositionTable.LOWER_BOUND : TranspositionTable.EXACT;
+        table.store(key, Math.min(depth, 255), bound, toTable(best, ply), bestColumn);
+        return best;
+    }
+
+    /**
+     * Stops the search if it has used up its time or nodes, or another thread has asked it to stop.
+     */
+    private void checkLimits()
+    {
+        if ((timeLimit > 0 && System.nanoTime() - deadline >= 0) || (nodeLimit > 0 && nodes >= nodeLimit)
+            || (stopSignal != null && stopSignal.get()))
+        {
+            stopped = true;
+        }
+    }
+
+    /**
+     * Converts a win or loss score from distance-from-root to distance-from-this-position,
+     * so it can be reused wherever the position turns up.
+     */
+    private static int toTable(int score, int ply)
+    {
+        if (score > WIN_THRESHOLD)
+        {
+            return score + ply;
+        }
+        if (score < -WIN_THRESHOLD)
+        {
+            return score - ply;
+        }
+        return score;
+    }
+
+    /**
+     * Converts a win or loss score read from the table back to distance-from-root.
+     */
+    private static int fromTable(int score, int ply)
+    {
+        if (score > WIN_THRESHOLD)
+        {
+            return score - ply;
+        }
+        if (score < -WIN_THRESHOLD)
+        {
+            return score + ply;
+        }
+        return score;
+    }
+}
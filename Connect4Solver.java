@@ -0,0 +1,275 @@
+import java.io.IOException;
+
+/**
+ * Works out the exact value of a position: whether the player to move wins, draws or loses
+ * with perfect play, and how long it takes.
+ * 
+ * The solver searches the whole game tree with Connect4Search, but never with a full window.
+ * Instead it asks a series of yes/no questions ("is the value better than v?"), each answered
+ * by a null-window search, and narrows the range of possible values until one is left, in the
+ * manner of MTD(f). Null-window searches cut off far more than full-window ones, and the
+ * transposition table carries what each one learnt into the next.
+ * 
+ * Values are on the Connect4Search scale, from the point of view of the player to move:
+ * 0 for a draw, WIN_SCORE - n for a win whose winning token is placed n plies from now
+ * (counting the move about to be made as ply 0), and -(WIN_SCORE - n) for a loss.
+ * 
+ * If the solver has a SolvedPositionStore, it looks every position up there first and adds
+ * every position it solves, so nothing is ever solved twice, even between runs.
+ * 
+ * Your agent MAY use this class to choose its moves.
+ */
+public class Connect4Solver
+{
+    public static final int UNKNOWN = Integer.MIN_VALUE;    // returned when the solver runs out of time
+
+    private Connect4Search search;
+    private TranspositionTable table;
+    private SolvedPositionStore store;  // solved positions kept between runs; may be null
+    private long timeLimit; // the most time a solve may take, in milliseconds; 0 for no limit
+
+    private int bestMove;   // the best move of the most recent solve
+    private long nodes; // the nodes visited by the most recent solve, over every null-window search
+    private int iterations; // the number of null-window searches the most recent solve made
+    private boolean fromStore;  // whether the most recent solve was answered by the store
+
+    /**
+     * Creates a new solver.
+     * 
+     * @param table the transposition table to use. It should not be shared with searches that
+     *        have a depth limit, since the solver relies on the table's deepest entries being exact.
+     */
+    public Connect4Solver(TranspositionTable table)
+    {
+        this.table = table;
+        search = new Connect4Search(table);
+    }
+
+    /**
+     * Sets the store to look positions up in, and to add solved positions to.
+     * 
+     * @param store the store, or null for none.
+     */
+    public void setStore(SolvedPositionStore store)
+    {
+        this.store = store;
+    }
+
+    /**
+     * Sets the most time a solve may take. A solve that runs out of time returns UNKNOWN.
+     * 
+     * @param millis the time limit in milliseconds, or 0 for no limit.
+     */
+    public void setTimeLimit(long millis)
+    {
+        this.timeLimit = millis;
+    }
+
+    /**
+     * Looks a position up in the store, without searching.
+     * 
+     * @param position the position.
+     * @param red true if red is to move.
+     * @return the best column, or -1 if the position is not in the store.
+     */
+    public int lookup(Connect4Game position, boolean red)
+    {
+        if (store == null || store.getColumnCount() != position.getColumnCount()
+            || store.getRowCount() != position.getRowCount())
+        {
+            return -1;
+        }
+        long entry = store.lookup(OpeningBook.key(position, red));
+        return entry == SolvedPositionStore.NOT_FOUND ? -1 : SolvedPositionStore.columnOf(entry);
+    }
+
+    /**
+     * Finds the exact value of a position. The position must have at least one open column
+     * and must not already be won.
+     * 
+     * @param position the game to solve; it is copied, not changed.
+     * @param red true if red is to move, false if yellow is to move.
+     * @return the value, from the point of view of the player to move, or UNKNOWN if the
+     *         solve ran out of time.
+     */
+    public int solve(Connect4Game position, boolean red)
+    {
+        nodes = 0;
+        iterations = 0;
+        fromStore = false;
+        long key = OpeningBook.key(position, red);
+        if (store != null && store.getColumnCount() == position.getColumnCount()
+            && store.getRowCount() == position.getRowCount())
+        {
+            long entry = store.lookup(key);
+            if (entry != SolvedPositionStore.NOT_FOUND)
+            {
+                fromStore = true;
+                bestMove = SolvedPositionStore.columnOf(entry);
+                return SolvedPositionStore.valueOf(entry);
+            }
+        }
+
+        long deadline = System.nanoTime() + timeLimit * 1000000L;
+        int empty = position.getColumnCount() * position.getRowCount() - position.getTokenCount();
+        table.newSearch();
+        // Search on the scale of ranks: empty for a win on this move, down to 1 for a win on the
+        // last slot, 0 for a draw, and -1 down to -(empty - 1) for losses. Every rank is a
+        // possible value, so halving the range of ranks halves the number of candidates.
+        int lower = -(empty - 1);
+        int upper = empty;
+        while (lower < upper)
+        {
+            int middle = lower + (upper - lower) / 2;
+            if (middle <= 0 && lower / 2 < middle)  // lean towards 0, where most values are
+            {
+                middle = lower / 2;
+            }
+            else if (middle >= 0 && upper / 2 > middle)
+            {
+                middle = upper / 2;
+            }
+            int score = test(position, red, empty, toValue(middle, empty), deadline);
+            if (score == UNKNOWN)
+            {
+                return UNKNOWN;
+            }
+            if (toRank(score, empty) <= middle)
+            {
+                upper = toRank(score, empty);
+            }
+            else
+            {
+                lower = toRank(score, empty);
+            }
+        }
+
+        int value = toValue(lower, empty);
+        // One more test, just below the value, fails high on a move that reaches it.
+        if (test(position, red, empty, value - 1, deadline) == UNKNOWN)
+        {
+            return UNKNOWN;
+        }
+        bestMove = search.getBestMove();
+        if (store != null && store.getColumnCount() == position.getColumnCount()
+            && store.getRowCount() == position.getRowCount())
+        {
+            try
+            {
+                store.put(key, value, bestMove);
+            }
+            catch (IOException e)
+            {
+                throw new IllegalStateException("Could not save a solved position", e);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Returns the best move found by the most recent solve.
+     * 
+     * @return the column.
+     */
+    public int getBestMove()
+    {
+        return bestMove;
+    }
+
+    /**
+     * Returns the number of nodes the most recent solve visited.
+     * 
+     * @return the number of nodes, over every null-window search.
+     */
+    public long getNodes()
+    {
+        return nodes;
+    }
+
+    /**
+     * Describes the most recent solve, for printing.
+     * 
+     * @return where the answer came from and how much searching it took.
+     */
+    public String getReport()
+    {
+        return fromStore ? "from the store" : iterations + " null-window searches, " + nodes + " nodes";
+    }
+
+    /**
+     * Works out who wins from a value.
+     * 
+     * @param value a value returned by solve().
+     * @return 1 if the player to move wins, 0 for a draw, -1 if they lose.
+     */
+    public static int getOutcome(int value)
+    {
+        return Integer.signum(value);
+    }
+
+    /**
+     * Works out how soon the game is decided from a value.
+     * 
+     * @param value a value returned by solve().
+     * @return the number of plies up to and including the winning move, or 0 for a draw.
+     */
+    public static int getDistance(int value)
+    {
+        return value == 0 ? 0 : Connect4Search.WIN_SCORE - Math.abs(value) + 1;
+    }
+
+    /**
+     * Runs one null-window search: is the value of the position above the given value?
+     * 
+     * @return a fail-soft score, or UNKNOWN if the time ran out.
+     */
+    private int test(Connect4Game position, boolean red, int empty, int value, long deadline)
+    {
+        long remaining = 0;
+        if (timeLimit > 0)
+        {
+            remaining = (deadline - System.nanoTime()) / 1000000L;
+            if (remaining <= 0)
+            {
+                return UNKNOWN;
+            }
+        }
+        search.setTimeLimit(remaining);
+        int score = search.searchWindow(position, red, empty, value, value + 1);
+        nodes += search.getNodes();
+        iterations++;
+        return search.wasStopped() ? UNKNOWN : score;
+    }
+
+    /**
+     * Converts a rank to a value.
+     */
+    private static int toValue(int rank, int empty)
+    {
+        if (rank > 0)
+        {
+            return Connect4Search.WIN_SCORE - (empty - rank);
+        }
+        if (rank < 0)
+        {
+            return -(Connect4Search.WIN_SCORE - (empty + rank));
+        }
+        return 0;
+    }
+
+    /**
+     * Converts a value to a rank.
+     */
+    private static int toRank(int value, int empty)
+    {
+        if (value > 0)
+        {
+            return empty - (Connect4Search.WIN_SCORE - value);
+        }
+        if (value < 0)
+        {
+            return -(empty - (Connect4Search.WIN_SCORE + value));
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,118 @@
+/**
+ * Checks that a timed MyAgent with a solver keeps to its move deadline in the endgame, where it
+ * tries to solve the rest of the game exactly. On a wide board even a few empty slots can take
+ * the solver far longer than a move is allowed, so the solve has to give up in time and leave
+ * the move to the search.
+ * 
+ * Each board is filled without a winner until only the solver's number of slots is left, spread
+ * over the top of the columns, and two MyAgents with solvers play it out under a referee with a
+ * move limit. Every move is printed with its time, and the program exits with status 1 if any
+ * move was lost on time.
+ * 
+ * Usage: java EndgameClockCheck [moveLimitMillis boardSizes...]
+ * The defaults are a 200 ms move limit and boards of 7x6, 15x15 and 20x20, written as 15x15.
+ */
+public class EndgameClockCheck
+{
+    private static final int EMPTY_SLOTS = 16;  // as many as MyAgent solves
+    private static final int TABLE_MEGABYTES = 16;
+
+    public static void main(String[] args)
+    {
+        long limit = args.length > 0 ? Long.parseLong(args[0]) : 200;
+        String[] sizes = { "7x6", "15x15", "20x20" };
+        if (args.length > 1)
+        {
+            sizes = new String[args.length - 1];
+            System.arraycopy(args, 1, sizes, 0, sizes.length);
+        }
+
+        int lost = 0;
+        for (String size : sizes)
+        {
+            int columns = Integer.parseInt(size.substring(0, size.indexOf('x')));
+            int rows = Integer.parseInt(size.substring(size.indexOf('x') + 1));
+            Connect4Game game = endgame(columns, rows);
+            boolean red = game.getRedPlayedFirst() == (game.getTokenCount() % 2 == 0);
+            MyAgent redPlayer = new MyAgent(game, true, limit);
+            MyAgent yellowPlayer = new MyAgent(game, false, limit);
+            redPlayer.setSolver(new Connect4Solver(new TranspositionTable(TABLE_MEGABYTES)));
+            yellowPlayer.setSolver(new Connect4Solver(new TranspositionTable(TABLE_MEGABYTES)));
+            Referee referee = new Referee(game, redPlayer, yellowPlayer, new TimeControl(limit, 0, 0));
+            try
+            {
+                String error = "";
+                long slowest = 0;
+                while (error.length() == 0 && referee.getGame().getWinner() == 'N' && !referee.getGame().boardFull())
+                {
+                    error = referee.move(red);
+                    slowest = Math.max(slowest, referee.getLastMoveNanos());
+                    red = !red;
+                }
+                System.out.println(String.format("%s: slowest move %.1f ms of %d ms%s", size, slowest / 1e6, limit,
+                    error.length() > 0 ? ", lost: " + error : ""));
+                if (error.length() > 0)
+                {
+                    lost++;
+                }
+            }
+            finally
+            {
+                referee.shutdown();
+                redPlayer.close();
+                yellowPlayer.close();
+            }
+        }
+        if (lost > 0)
+        {
+            System.out.println(lost + " of " + sizes.length + " endgames lost on time");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Fills a board with no four in a row, leaving up to EMPTY_SLOTS slots open at the tops of
+     * the columns. The tokens go in pairs across each row, and each row is one pair along from
+     * the row below, so no line of three tokens has one color. If that leaves one color two or
+     * more tokens ahead, the other color fills open slots until the counts could come from a
+     * real game.
+     */
+    private static Connect4Game endgame(int columns, int rows)
+    {
+        Connect4Game game = new Connect4Game(columns, rows);
+        int[] open = new int[columns];  // the empty slots to leave at the top of each column
+        for (int i = 0; i < Math.min(EMPTY_SLOTS, columns * rows); i++)
+        {
+            open[i % columns]++;
+        }
+        int lead = 0;   // red tokens less yellow tokens
+        for (int row = 0; row < rows; row++)    // counting up from the bottom
+        {
+            for (int c = 0; c < columns; c++)
+            {
+                if (row < rows - open[c])
+                {
+                    boolean red = (c / 2 + row) % 2 == 0;
+                    game.drop(c, red);
+                    lead += red ? 1 : -1;
+                }
+            }
+        }
+        for (int c = 0; c < columns && Math.abs(lead) > 1; c++)
+        {
+            if (game.drop(c, lead < 0) >= 0)
+            {
+                if (game.getWinner() != 'N')
+                {
+                    game.undo();
+                }
+                else
+                {
+                    lead += lead < 0 ? 1 : -1;
+                }
+            }
+        }
+        game.setRedPlayedFirst(lead >= 0);
+        return game;
+    }
+}
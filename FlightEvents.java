@@ -0,0 +1,176 @@
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Java Flight Recorder events for moves, search iterations and finished games, so that a
+ * recording of a match shows what the agents were doing next to the JVM's own garbage
+ * collection and CPU samples.
+ * 
+ * The event types are registered when the class is loaded, so the events are recorded like the
+ * JVM's own whenever a recording is running, for example one started on a match already under
+ * way with "jcmd pid JFR.start". While no recording wants them, begin() only makes an event to
+ * ask whether it is enabled and returns null, so the places that make events cost a fraction
+ * of a microsecond. Starting the program with -Dconnect4.jfr=false turns them off altogether:
+ * nothing here then touches Flight Recorder and begin() just returns null.
+ * 
+ * This code is built for Java 8, which has no Flight Recorder API, so the event types are made
+ * with jdk.jfr.EventFactory, reached by reflection. On a JVM without it (before Java 11) the
+ * events stay off.
+ * 
+ * A long field whose name ends in "Time" is a time span in nanoseconds.
+ * 
+ * Your agent will not need to use this class.
+ */
+public final class FlightEvents
+{
+    public static final String PROPERTY = "connect4.jfr";   // the system property that turns the events off when "false"
+    private static final boolean WANTED = !"false".equals(System.getProperty(PROPERTY));
+    private static Method newEvent, isEnabled, begin, shouldCommit, set, commit;    // EventFactory.newEvent() and Event's methods
+
+    public static final FlightEvents MOVE = new FlightEvents("connect4.Move", "Move",
+        "An agent's move, from when it was asked to move until it answered",
+        new String[] { "agent", "red", "column", "forfeit" },
+        new String[] { "Agent", "Red", "Column", "Forfeit" },
+        new Class<?>[] { String.class, boolean.class, int.class, String.class });
+    public static final FlightEvents SEARCH_ITERATION = new FlightEvents("connect4.SearchIteration",
+        "Search Iteration", "One depth of an iterative deepening search",
+        new String[] { "depth", "nodes", "score", "column", "helper" },
+        new String[] { "Depth", "Nodes", "Score", "Best Column", "Helper" },
+        new Class<?>[] { int.class, long.class, int.class, int.class, boolean.class });
+    public static final FlightEvents GAME = new FlightEvents("connect4.Game", "Game Finished",
+        "The end of a game",
+        new String[] { "red", "yellow", "winner", "plies", "gameTime", "forfeit" },
+        new String[] { "Red", "Yellow", "Winner", "Plies", "Game Time", "Forfeit" },
+        new Class<?>[] { String.class, String.class, String.class, int.class, long.class, String.class });
+
+    private final Object factory;   // makes events of this type; null while events are off
+
+    /**
+     * Defines an event type, if events are on.
+     */
+    private FlightEvents(String name, String label, String description, String[] fieldNames,
+        String[] fieldLabels, Class<?>[] fieldTypes)
+    {
+        Object made = null;
+        if (WANTED)
+        {
+            try
+            {
+                made = define(name, label, description, fieldNames, fieldLabels, fieldTypes);
+            }
+            catch (ReflectiveOperationException | RuntimeException e)
+            {
+                System.err.println("Flight Recorder events are off: " + e);
+            }
+        }
+        factory = made;
+    }
+
+    /**
+     * Starts an event, for something about to happen.
+     * 
+     * @return the event, to pass to commit() once its values are known, or null while events
+     *         are off or no recording wants this type.
+     */
+    public Object begin()
+    {
+        if (factory == null)
+        {
+            return null;
+        }
+        try
+        {
+            Object event = newEvent.invoke(factory);
+            if (!(Boolean) isEnabled.invoke(event))
+            {
+                return null;
+            }
+            begin.invoke(event);
+            return event;
+        }
+        catch (ReflectiveOperationException e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Finishes an event and records it, if a recording wants it.
+     * 
+     * @param event the event from begin(); nothing happens if it is null.
+     * @param values the value of each field, in the order the fields were defined.
+     */
+    public void commit(Object event, Object... values)
+    {
+        if (event == null)
+        {
+            return;
+        }
+        try
+        {
+            if (!(Boolean) shouldCommit.invoke(event))  // for example, shorter than the recording's threshold
+            {
+                return;
+            }
+            for (int i = 0; i < values.length; i++)
+            {
+                set.invoke(event, i, values[i]);
+            }
+            commit.invoke(event);
+        }
+        catch (ReflectiveOperationException e)
+        {
+            // a lost event is not worth stopping a game for
+        }
+    }
+
+    /**
+     * Makes an event factory for a new event type with jdk.jfr.EventFactory.create().
+     */
+    private static Object define(String name, String label, String description, String[] fieldNames,
+        String[] fieldLabels, Class<?>[] fieldTypes) throws ReflectiveOperationException
+    {
+        Class<?> factoryClass = Class.forName("jdk.jfr.EventFactory");
+        Class<?> eventClass = Class.forName("jdk.jfr.Event");
+        Class<?> descriptorClass = Class.forName("jdk.jfr.ValueDescriptor");
+        newEvent = factoryClass.getMethod("newEvent");
+        isEnabled = eventClass.getMethod("isEnabled");
+        begin = eventClass.getMethod("begin");
+        shouldCommit = eventClass.getMethod("shouldCommit");
+        set = eventClass.getMethod("set", int.class, Object.class);
+        commit = eventClass.getMethod("commit");
+
+        List<Object> annotations = new ArrayList<Object>();
+        annotations.add(annotation("Name", name));
+        annotations.add(annotation("Label", label));
+        annotations.add(annotation("Description", description));
+        annotations.add(annotation("Category", new String[] { "Connect 4" }));
+        annotations.add(annotation("StackTrace", Boolean.FALSE));   // the stack is always the referee or the search
+        List<Object> fields = new ArrayList<Object>();
+        Constructor<?> descriptor = descriptorClass.getConstructor(Class.class, String.class, List.class);
+        for (int i = 0; i < fieldNames.length; i++)
+        {
+            List<Object> fieldAnnotations = new ArrayList<Object>();
+            fieldAnnotations.add(annotation("Label", fieldLabels[i]));
+            if (fieldTypes[i] == long.class && fieldNames[i].endsWith("Time"))
+            {
+                fieldAnnotations.add(annotation("Timespan", "NANOSECONDS"));
+            }
+            fields.add(descriptor.newInstance(fieldTypes[i], fieldNames[i], fieldAnnotations));
+        }
+        return factoryClass.getMethod("create", List.class, List.class).invoke(null, annotations, fields);
+    }
+
+    /**
+     * Makes a jdk.jfr.AnnotationElement for one of the annotations in jdk.jfr.
+     */
+    private static Object annotation(String type, Object value) throws ReflectiveOperationException
+    {
+        Class<?> annotationType = Class.forName("jdk.jfr." + type);
+        return Class.forName("jdk.jfr.AnnotationElement").getConstructor(Class.class, Object.class)
+            .newInstance(annotationType.asSubclass(Annotation.class), value);
+    }
+}
@@ -0,0 +1,177 @@
+/**
+ * One finished game, as stored in a game archive: the board size and win length, who played
+ * first, the names of the two agents, every move, and the result.
+ * 
+ * See GameRecordWriter and GameRecordReader for the archive itself.
+ * 
+ * Your agent will not need to use this class.
+ */
+public final class GameRecord
+{
+    private final int columnCount;
+    private final int rowCount;
+    private final int winLength;    // the number of tokens in a row needed to win
+    private final boolean redPlayedFirst;
+    private final String redName;
+    private final String yellowName;
+    private final int[] moves;  // the column of each move, in order
+    private final char result;  // 'R' or 'Y' for the winner, 'N' for a draw
+
+    /**
+     * Creates a record.
+     * 
+     * @param columns the number of columns in the game board.
+     * @param rows the number of rows in the game board.
+     * @param winLength the number of tokens in a row needed to win.
+     * @param redPlayedFirst true if red moved first.
+     * @param redName the name of the red agent.
+     * @param yellowName the name of the yellow agent.
+     * @param moves the column of each move, in order; the array is copied.
+     * @param result 'R' or 'Y' for the winner, or 'N' for a draw.
+     */
+    public GameRecord(int columns, int rows, int winLength, boolean redPlayedFirst, String redName,
+        String yellowName, int[] moves, char result)
+    {
+        this.columnCount = columns;
+        this.rowCount = rows;
+        this.winLength = winLength;
+        this.redPlayedFirst = redPlayedFirst;
+        this.redName = redName;
+        this.yellowName = yellowName;
+        this.moves = moves.clone();
+        this.result = result;
+    }
+
+    /**
+     * Creates a record of a game kept as a chain of positions. The chain must start from an
+     * empty board.
+     * 
+     * @param last the final position of the game.
+     * @param redName the name of the red agent.
+     * @param yellowName the name of the yellow agent.
+     * @param result 'R' or 'Y' for the winner, or 'N' for a draw. This is not always the winner
+     *        of the final position, since a game can also end by a player breaking the rules.
+     * @return the record.
+     */
+    public static GameRecord of(Connect4Position last, String redName, String yellowName, char result)
+    {
+        int[] moves = new int[last.getPly()];
+        Connect4Position p = last;
+        for (int i = moves.length - 1; i >= 0; i--)
+        {
+            moves[i] = p.getLastColumn();
+            p = p.getParent();
+        }
+        return new GameRecord(last.getColumnCount(), last.getRowCount(), last.getWinLength(), p.isRedToMove(),
+            redName, yellowName, moves, result);
+    }
+
+    /**
+     * Replays the game onto a new board.
+     * 
+     * @return the game as it was when it ended.
+     */
+    public Connect4Game toGame()
+    {
+        Connect4Game game = new Connect4Game(columnCount, rowCount, winLength);
+        game.setRedPlayedFirst(redPlayedFirst);
+        boolean red = redPlayedFirst;
+        for (int column : moves)
+        {
+            game.drop(column, red);
+            red = !red;
+        }
+        return game;
+    }
+
+    /**
+     * Returns the number of columns in the game board.
+     * 
+     * @return the number of columns.
+     */
+    public int getColumnCount()
+    {
+        return columnCount;
+    }
+
+    /**
+     * Returns the number of rows in the game board.
+     * 
+     * @return the number of rows.
+     */
+    public int getRowCount()
+    {
+        return rowCount;
+    }
+
+    /**
+     * Returns the number of tokens in a row needed to win.
+     * 
+     * @return the win length.
+     */
+    public int getWinLength()
+    {
+        return winLength;
+    }
+
+    /**
+     * Returns who moved first.
+     * 
+     * @return true if red moved first.
+     */
+    public boolean getRedPlayedFirst()
+    {
+        return redPlayedFirst;
+    }
+
+    /**
+     * Returns the name of the red agent.
+     * 
+     * @return the name.
+     */
+    public String getRedName()
+    {
+        return redName;
+    }
+
+    /**
+     * Returns the name of the yellow agent.
+     * 
+     * @return the name.
+     */
+    public String getYellowName()
+    {
+        return yellowName;
+    }
+
+    /**
+     * Returns the number of moves in the game.
+     * 
+     * @return the number of moves.
+     */
+    public int getMoveCount()
+    {
+        return moves.length;
+    }
+
+    /**
+     * Returns one move of the game.
+     * 
+     * @param index the number of the move, from 0.
+     * @return the column played.
+     */
+    public int getMove(int index)
+    {
+        return moves[index];
+    }
+
+    /**
+     * Returns the result of the game.
+     * 
+     * @return 'R' or 'Y' for the winner, or 'N' for a draw.
+     */
+    public char getResult()
+    {
+        return result;
+    }
+}
@@ -0,0 +1,245 @@
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads the games in a game archive one at a time, from the start of the file to the end.
+ * 
+ * Only a small piece of the file is held in memory at once, so an archive of millions of games
+ * can be scanned without loading it. See GameRecordWriter for the layout of an archive.
+ * 
+ * Your agent will not need to use this class.
+ */
+public class GameRecordReader implements Closeable
+{
+    private static final int BUFFER_BYTES = 1 << 16;
+
+    private FileChannel channel;
+    private ByteBuffer buffer;  // the part of the file read but not yet used
+    private List<String> names = new ArrayList<String>();  // every name met so far, by number
+    private int[] moves = new int[64];  // the moves of the record being read
+    private long count; // the number of records read so far
+    private int version;    // the version of the archive's layout
+
+    /**
+     * Opens an archive and checks its header.
+     * 
+     * @param file the archive.
+     * @throws IOException if the file cannot be read or is not an archive.
+     */
+    public GameRecordReader(File file) throws IOException
+    {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+        buffer.flip();
+        try
+        {
+            if (!fill(GameRecordWriter.HEADER_BYTES))
+            {
+                throw new IOException(file + " is too short to be a game archive");
+            }
+            if (buffer.getInt() != GameRecordWriter.MAGIC)
+            {
+                throw new IOException(file + " is not a game archive");
+            }
+            version = buffer.getInt();
+            if (version < 1 || version > GameRecordWriter.VERSION)
+            {
+                throw new IOException(file + " has version " + version + ", expected 1 to " + GameRecordWriter.VERSION);
+            }
+        }
+        catch (IOException e)
+        {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the next game.
+     * 
+     * @return the game, or null at the end of the archive.
+     * @throws IOException if the file cannot be read, or ends in the middle of a record.
+     */
+    public GameRecord read() throws IOException
+    {
+        if (!fill(1))
+        {
+            return null;
+        }
+        int length = getNumber();
+        if (length > buffer.capacity())
+        {
+            ByteBuffer bigger = ByteBuffer.allocateDirect(length);
+            bigger.put(buffer);
+            bigger.flip();
+            buffer = bigger;
+        }
+        if (!fill(length))
+        {
+            throw new EOFException("The archive ends in the middle of record " + count);
+        }
+        int end = buffer.position() + length;
+        int columns = getNumber();
+        int rows = getNumber();
+        int winLength = version >= 2 ? getNumber() : Connect4Game.DEFAULT_WIN_LENGTH;
+        int flags = buffer.get();
+        String redName = readName();
+        String yellowName = readName();
+        int moveCount = getNumber();
+        if (moves.length < moveCount)
+        {
+            moves = new int[moveCount];
+        }
+        int bits = GameRecordWriter.bitsPerMove(columns);
+        int mask = (1 << bits) - 1;
+        long pending = 0;   // packed moves read but not yet used
+        int pendingBits = 0;
+        for (int i = 0; i < moveCount; i++)
+        {
+            while (pendingBits < bits)
+            {
+                pending |= (long) (buffer.get() & 0xFF) << pendingBits;
+                pendingBits += 8;
+            }
+            moves[i] = (int) pending & mask;
+            pending >>>= bits;
+            pendingBits -= bits;
+        }
+        if (buffer.position() != end)
+        {
+            throw new IOException("Record " + count + " is " + length + " bytes, but its contents are "
+                + (buffer.position() - end + length));
+        }
+        count++;
+        char result = (flags & 6) == 2 ? 'R' : (flags & 6) == 4 ? 'Y' : 'N';
+        return new GameRecord(columns, rows, winLength, (flags & 1) != 0, redName, yellowName,
+            Arrays.copyOf(moves, moveCount), result);
+    }
+
+    /**
+     * Returns the version of the archive's layout.
+     * 
+     * @return the version.
+     */
+    public int getVersion()
+    {
+        return version;
+    }
+
+    /**
+     * Returns the number of games read so far.
+     * 
+     * @return the number of games.
+     */
+    public long getCount()
+    {
+        return count;
+    }
+
+    /**
+     * Returns the number of different agent names met so far.
+     * 
+     * @return the number of names.
+     */
+    public int getNameCount()
+    {
+        return names.size();
+    }
+
+    /**
+     * Returns an agent name by its number in the archive.
+     * 
+     * @param number the number, from 0 up to getNameCount() - 1.
+     * @return the name.
+     */
+    public String getName(int number)
+    {
+        return names.get(number);
+    }
+
+    /**
+     * Closes the file.
+     * 
+     * @throws IOException if the file cannot be closed.
+     */
+    public void close() throws IOException
+    {
+        channel.close();
+    }
+
+    /**
+     * Reads from the file until the buffer holds at least the given number of bytes.
+     * 
+     * @return false if the file ends first.
+     */
+    private boolean fill(int needed) throws IOException
+    {
+        if (buffer.remaining() >= needed)
+        {
+            return true;
+        }
+        buffer.compact();
+        while (buffer.position() < needed)
+        {
+            if (channel.read(buffer) < 0)
+            {
+                buffer.flip();
+                return false;
+            }
+        }
+        buffer.flip();
+        return true;
+    }
+
+    /**
+     * Reads a number written seven bits at a time, lowest first.
+     */
+    private int getNumber() throws IOException
+    {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7)
+        {
+            if (!fill(1))
+            {
+                throw new EOFException("The archive ends in the middle of record " + count);
+            }
+            int b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0)
+            {
+                return value;
+            }
+        }
+        throw new IOException("Bad number in record " + count);
+    }
+
+    /**
+     * Reads a name's number, and the name itself if this is the first time it is used.
+     */
+    private String readName() throws IOException
+    {
+        int number = getNumber();
+        if (number < names.size())
+        {
+            return names.get(number);
+        }
+        if (number != names.size())
+        {
+            throw new IOException("Record " + count + " uses name " + number + " before it is defined");
+        }
+        byte[] bytes = new byte[getNumber()];
+        buffer.get(bytes);
+        String name = new String(bytes, StandardCharsets.UTF_8);
+        names.add(name);
+        return name;
+    }
+}
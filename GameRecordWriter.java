@@ -0,0 +1,234 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Appends games to a game archive.
+ * 
+ * An archive is a short header followed by one record per game. Each record starts with its
+ * length, so a reader can skip records it does not want. Inside a record, numbers are stored
+ * in as few bytes as they need (seven bits per byte, the top bit meaning "more to come"), and
+ * the moves are packed at ceil(log2(columns)) bits each: three bits per move on a standard
+ * board, so a whole game of 42 moves takes 16 bytes. Agent names are written out in full only
+ * the first time they appear in an archive; after that a record refers to them by number.
+ * 
+ * Records are collected in a buffer and written to the file in large pieces. Call flush() or
+ * close() to make sure everything has been written.
+ * 
+ * Record layout: length, columns, rows, win length, flags (bit 0: red played first; bits 1-2: 0
+ * for a draw, 1 if red won, 2 if yellow won), red name, yellow name, move count, packed moves. A
+ * name is its number; if the number is new, the length and UTF-8 bytes of the name follow.
+ * Version 1 archives, written before the win length could change, leave it out; they can be
+ * read, but not added to.
+ * 
+ * Your agent will not need to use this class.
+ */
+public class GameRecordWriter implements Closeable
+{
+    public static final int MAGIC = 0x43344752;    // "C4GR", at the start of every archive
+    public static final int VERSION = 2;
+    public static final int HEADER_BYTES = 8;   // magic, version
+
+    private static final int BUFFER_BYTES = 1 << 16;
+
+    private FileChannel channel;
+    private ByteBuffer buffer;  // records waiting to be written to the file
+    private ByteBuffer record;  // the record being put together, so its length is known before it is written
+    private Map<String, Integer> names = new HashMap<String, Integer>();    // the number of every name written so far
+
+    /**
+     * Opens an archive for appending, creating it if it does not exist. If it does exist, it
+     * is read through once to find the names already in it.
+     * 
+     * @param file the archive.
+     * @throws IOException if the file cannot be read or written, or is not an archive of the
+     *         current version.
+     */
+    public GameRecordWriter(File file) throws IOException
+    {
+        if (file.exists() && file.length() > 0)
+        {
+            try (GameRecordReader reader = new GameRecordReader(file))
+            {
+                if (reader.getVersion() != VERSION)
+                {
+                    throw new IOException(file + " has version " + reader.getVersion() + ", and can only be added to by "
+                        + "the version that wrote it");
+                }
+                while (reader.read() != null)
+                {
+                }
+                for (int i = 0; i < reader.getNameCount(); i++)
+                {
+                    names.put(reader.getName(i), i);
+                }
+            }
+        }
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.APPEND);
+        buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+        record = ByteBuffer.allocate(1024);
+        if (channel.size() == 0)
+        {
+            buffer.putInt(MAGIC).putInt(VERSION);
+        }
+    }
+
+    /**
+     * Adds a game to the archive.
+     * 
+     * @param game the game.
+     * @throws IOException if the buffer could not be written to the file.
+     */
+    public void write(GameRecord game) throws IOException
+    {
+        int columns = game.getColumnCount();
+        int bits = bitsPerMove(columns);
+        int moves = game.getMoveCount();
+        int needed = 64 + 2 * 5 + (moves * bits + 7) / 8 + 3 * (game.getRedName().length() + game.getYellowName().length());
+        if (record.capacity() < needed)
+        {
+            record = ByteBuffer.allocate(needed);
+        }
+        record.clear();
+        putNumber(record, columns);
+        putNumber(record, game.getRowCount());
+        putNumber(record, game.getWinLength());
+        int result = game.getResult() == 'R' ? 1 : game.getResult() == 'Y' ? 2 : 0;
+        record.put((byte) ((game.getRedPlayedFirst() ? 1 : 0) | (result << 1)));
+        putName(game.getRedName());
+        putName(game.getYellowName());
+        putNumber(record, moves);
+        long pending = 0;   // packed moves not yet written
+        int pendingBits = 0;
+        for (int i = 0; i < moves; i++)
+        {
+            pending |= (long) game.getMove(i) << pendingBits;
+            pendingBits += bits;
+            while (pendingBits >= 8)
+            {
+                record.put((byte) pending);
+                pending >>>= 8;
+                pendingBits -= 8;
+            }
+        }
+        if (pendingBits > 0)
+        {
+            record.put((byte) pending);
+        }
+        record.flip();
+
+        if (buffer.remaining() < record.remaining() + 5)
+        {
+            flushBuffer();
+        }
+        if (buffer.remaining() < record.remaining() + 5)    // a record bigger than the whole buffer
+        {
+            ByteBuffer length = ByteBuffer.allocate(5);
+            putNumber(length, record.remaining());
+            length.flip();
+            writeFully(length);
+            writeFully(record);
+            return;
+        }
+        putNumber(buffer, record.remaining());
+        buffer.put(record);
+    }
+
+    /**
+     * Writes everything buffered so far to the file.
+     * 
+     * @throws IOException if the file cannot be written.
+     */
+    public void flush() throws IOException
+    {
+        flushBuffer();
+    }
+
+    /**
+     * Writes everything buffered so far and closes the file.
+     * 
+     * @throws IOException if the file cannot be written or closed.
+     */
+    public void close() throws IOException
+    {
+        try
+        {
+            flushBuffer();
+        }
+        finally
+        {
+            channel.close();
+        }
+    }
+
+    /**
+     * Works out how many bits a move takes on a board with the given number of columns.
+     * 
+     * @param columns the number of columns.
+     * @return ceil(log2(columns)), which is 0 for a single column.
+     */
+    static int bitsPerMove(int columns)
+    {
+        return 32 - Integer.numberOfLeadingZeros(Math.max(columns, 1) - 1);
+    }
+
+    /**
+     * Writes a non-negative number seven bits at a time, lowest first.
+     */
+    static void putNumber(ByteBuffer out, int value)
+    {
+        while ((value & ~0x7F) != 0)
+        {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    /**
+     * Writes a name's number, and the name itself the first time it is used.
+     */
+    private void putName(String name)
+    {
+        Integer known = names.get(name);
+        if (known != null)
+        {
+            putNumber(record, known);
+            return;
+        }
+        int number = names.size();
+        names.put(name, number);
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        putNumber(record, number);
+        putNumber(record, bytes.length);
+        record.put(bytes);
+    }
+
+    /**
+     * Writes the buffer to the file and empties it.
+     */
+    private void flushBuffer() throws IOException
+    {
+        buffer.flip();
+        writeFully(buffer);
+        buffer.clear();
+    }
+
+    /**
+     * Writes the whole of a buffer to the file.
+     */
+    private void writeFully(ByteBuffer data) throws IOException
+    {
+        while (data.hasRemaining())
+        {
+            channel.write(data);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts how long something takes, in buckets, so percentiles can be read off cheaply at any
+ * time. Any number of threads may record into it at once. Each thread records into one of a
+ * few stripes, picked by its id, so threads on different processors seldom write the same
+ * memory; reading adds the stripes up.
+ * 
+ * Each power of two is split into eight buckets, so a percentile is never more than an eighth
+ * out. Recording is a few shifts and atomic adds, with no locks and no garbage, so it can go
+ * around every move of a game.
+ * 
+ * Your agent will not need to use this class.
+ */
+public class LatencyHistogram
+{
+    private static final int SUB_BITS = 3;  // each power of two is split into 2^SUB_BITS buckets
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS + 1) * SUB_BUCKETS;
+    private static final int TOTAL = BUCKETS;   // where in a stripe the sum of its values is kept, for the mean
+    private static final int MAX = BUCKETS + 1; // where in a stripe its largest value is kept
+    private static final int STRIPE = BUCKETS + 16; // the length of a stripe, padded so stripes do not share a cache line
+    private static final int STRIPES = 8;   // a power of two
+
+    private final AtomicLongArray counts = new AtomicLongArray(STRIPES * STRIPE);   // the buckets, total and max of each stripe
+
+    /**
+     * Records one value.
+     * 
+     * @param nanos how long something took, in nanoseconds; negative values count as 0.
+     */
+    public void record(long nanos)
+    {
+        long value = Math.max(0, nanos);
+        int stripe = (int) (Thread.currentThread().getId() & (STRIPES - 1)) * STRIPE;
+        counts.incrementAndGet(stripe + bucket(value));
+        counts.addAndGet(stripe + TOTAL, value);
+        long highest = counts.get(stripe + MAX);
+        while (value > highest && !counts.compareAndSet(stripe + MAX, highest, value))
+        {
+            highest = counts.get(stripe + MAX);
+        }
+    }
+
+    /**
+     * Returns the number of values recorded.
+     * 
+     * @return the count.
+     */
+    public long getCount()
+    {
+        long count = 0;
+        for (int stripe = 0; stripe < STRIPES * STRIPE; stripe += STRIPE)
+        {
+            for (int i = 0; i < BUCKETS; i++)
+            {
+                count += counts.get(stripe + i);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the mean of the values recorded.
+     * 
+     * @return the mean in nanoseconds, or 0 if nothing has been recorded.
+     */
+    public double getMean()
+    {
+        long count = getCount();
+        long total = 0;
+        for (int stripe = 0; stripe < STRIPES * STRIPE; stripe += STRIPE)
+        {
+            total += counts.get(stripe + TOTAL);
+        }
+        return count > 0 ? (double) total / count : 0;
+    }
+
+    /**
+     * Returns the largest value recorded.
+     * 
+     * @return the largest value in nanoseconds, or 0 if nothing has been recorded.
+     */
+    public long getMax()
+    {
+        long max = 0;
+        for (int stripe = 0; stripe < STRIPES * STRIPE; stripe += STRIPE)
+        {
+            max = Math.max(max, counts.get(stripe + MAX));
+        }
+        return max;
+    }
+
+    /**
+     * Returns a value that the given fraction of the values recorded are no bigger than, to
+     * within an eighth.
+     * 
+     * @param fraction the fraction, such as 0.5 for the median or 0.99.
+     * @return the value in nanoseconds, or 0 if nothing has been recorded.
+     */
+    public long getPercentile(double fraction)
+    {
+        long[] merged = new long[BUCKETS];
+        long count = 0;
+        for (int stripe = 0; stripe < STRIPES * STRIPE; stripe += STRIPE)
+        {
+            for (int i = 0; i < BUCKETS; i++)
+            {
+                long n = counts.get(stripe + i);
+                merged[i] += n;
+                count += n;
+            }
+        }
+        long max = getMax();
+        if (count == 0)
+        {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(fraction * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++)
+        {
+            seen += merged[i];
+            if (seen >= rank)
+            {
+                return Math.min(highestIn(i), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Forgets every value recorded. Values recorded by other threads while this runs may be
+     * partly kept.
+     */
+    public void reset()
+    {
+        for (int i = 0; i < counts.length(); i++)
+        {
+            counts.set(i, 0);
+        }
+    }
+
+    /**
+     * Finds the bucket a value goes in. Values below SUB_BUCKETS get a bucket each; above that,
+     * the bucket is the power of two and the next SUB_BITS bits.
+     */
+    private static int bucket(long value)
+    {
+        if (value < SUB_BUCKETS)
+        {
+            return (int) value;
+        }
+        int power = 63 - Long.numberOfLeadingZeros(value);
+        return ((power - SUB_BITS + 1) << SUB_BITS) + (int) ((value >>> (power - SUB_BITS)) & (SUB_BUCKETS - 1));
+    }
+
+    /**
+     * Finds the largest value that goes in a bucket.
+     */
+    private static long highestIn(int bucket)
+    {
+        if (bucket < SUB_BUCKETS)
+        {
+            return bucket;
+        }
+        int power = (bucket >>> SUB_BITS) + SUB_BITS - 1;
+        long lowest = (long) (SUB_BUCKETS + (bucket & (SUB_BUCKETS - 1))) << (power - SUB_BITS);
+        return lowest + (1L << (power - SUB_BITS)) - 1;
+    }
+}
@@ -0,0 +1,360 @@
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * An agent that chooses its moves by Monte Carlo Tree Search.
+ * 
+ * Instead of looking at every move to a fixed depth, the agent plays thousands of quick games
+ * from the current position and spends more of them on the moves that keep winning. This still
+ * plays sensibly on boards far too big for an alpha-beta search to see very far.
+ * 
+ * The search can use several threads in one of two ways. In TREE_PARALLEL mode every thread
+ * adds playouts to one shared tree; in ROOT_PARALLEL mode each thread grows its own tree and
+ * the visit counts of their root moves are added together at the end. Either way, the tree is
+ * kept between moves: when the agent moves again in the same game, the part of the tree below
+ * the new position is reused.
+ * 
+ * Made with the (game, iAmRed) constructor, as Tournament and SelfPlay do, the agent searches
+ * on one thread, since those already play a game on every processor; start the program with
+ * -Dconnect4.mcts.threads=n to use more. Each tree holds as many nodes as its threads could
+ * add in a move's time, so a small budget makes a small tree.
+ */
+public class MCTSAgent extends Agent
+{
+    public static final int TREE_PARALLEL = 0;  // all threads share one tree
+    public static final int ROOT_PARALLEL = 1;  // each thread has its own tree
+
+    private static final long DEFAULT_MOVE_MILLIS = 500;    // how long to think about each move by default
+    private static final long SAFETY_MILLIS = 20;   // the least time to leave before a move's deadline
+    private static final int NODE_CAPACITY = 2000000;   // the most nodes kept, over all trees
+    private static final int NODES_PER_MILLI = 1000;    // nodes to make room for per thread per millisecond of a move, a few times what one adds
+    public static final String THREADS_PROPERTY = "connect4.mcts.threads"; // the system property for the default number of threads
+
+    private long moveMillis;    // the longest to think about each move; less if the time control leaves less
+    private int mode;   // TREE_PARALLEL or ROOT_PARALLEL
+    private int threads;    // the number of threads to search with, including the calling thread
+    private ExecutorService helpers;    // runs the extra threads; made on the first search, and null with one thread
+    private MCTSTree[] trees;   // one tree, or one per thread in ROOT_PARALLEL mode
+    private int boardColumns, boardRows;    // the board size the trees were made for
+    private Connect4Game treeRoot;  // the position at the root of the trees, or null if they cannot be reused
+    private int lastMove;   // the column this agent played from treeRoot
+    private long lastPlayouts;  // the number of playouts in the most recent move
+
+    /**
+     * Constructs a new agent that thinks for half a second per move, on one thread unless the
+     * system property connect4.mcts.threads asks for more.
+     * 
+     * @param game The game the agent will be playing.
+     * @param iAmRed True if the agent is Red, False if the agent is Yellow.
+     */
+    public MCTSAgent(Connect4Game game, boolean iAmRed)
+    {
+        this(game, iAmRed, DEFAULT_MOVE_MILLIS, Integer.getInteger(THREADS_PROPERTY, 1), TREE_PARALLEL);
+    }
+
+    /**
+     * Constructs a new agent.
+     * 
+     * @param game The game the agent will be playing.
+     * @param iAmRed True if the agent is Red, False if the agent is Yellow.
+     * @param moveMillis How long to think about each move, in milliseconds.
+     * @param threads How many threads to search with.
+     * @param mode TREE_PARALLEL or ROOT_PARALLEL.
+     */
+    public MCTSAgent(Connect4Game game, boolean iAmRed, long moveMillis, int threads, int mode)
+    {
+        super(game, iAmRed);
+        this.moveMillis = moveMillis;
+        this.threads = Math.max(1, threads);
+        this.mode = mode;
+    }
+
+    /**
+     * Runs playouts until the time is up, then plays the move that was explored the most.
+     * A move that wins at once, or blocks the opponent from winning at once, is played
+     * without searching.
+     */
+    public void move()
+    {
+        int column = immediateMove(iAmRed);
+        if (column < 0)
+        {
+            column = immediateMove(!iAmRed);
+        }
+        if (column < 0)
+        {
+            column = search();
+        }
+        else
+        {
+            treeRoot = null;    // the tree does not follow this move, so start afresh next time
+            lastPlayouts = 0;
+        }
+        myGame.drop(column, iAmRed);
+        MetricsRegistry.getDefault().counter(metricName("playouts")).addAndGet(lastPlayouts);
+    }
+
+    /**
+     * Returns the name of this agent.
+     * 
+     * @return the agent's name
+     */
+    public String getName()
+    {
+        return "MCTS Agent";
+    }
+
+    /**
+     * Returns the number of playouts run for the most recent move.
+     * 
+     * @return the number of playouts.
+     */
+    public long getPlayouts()
+    {
+        return lastPlayouts;
+    }
+
+    /**
+     * Shuts down the helper threads and lets go of the trees. A later move starts afresh.
+     */
+    public void close()
+    {
+        if (helpers != null)
+        {
+            helpers.shutdown();
+            helpers = null;
+        }
+        trees = null;
+        treeRoot = null;
+    }
+
+    /**
+     * Returns the number of nodes in use, added up over every tree.
+     * 
+     * @return the number of nodes.
+     */
+    public long getNodes()
+    {
+        long nodes = 0;
+        if (trees != null)
+        {
+            for (MCTSTree tree : trees)
+            {
+                nodes += tree.getSize();
+            }
+        }
+        return nodes;
+    }
+
+    /**
+     * Grows the trees from the current position until the time is up.
+     * 
+     * @return the column whose root move has the most playouts.
+     */
+    private int search()
+    {
+        prepareTrees();
+        if (helpers == null && threads > 1)
+        {
+            helpers = Executors.newFixedThreadPool(threads - 1, new ThreadFactory() {
+                    public Thread newThread(Runnable r)
+                    {
+                        Thread thread = new Thread(r, "MCTS helper");
+                        thread.setDaemon(true); // helpers must not keep the program running
+                        return thread;
+                    }
+                });
+        }
+        final long deadline = System.nanoTime() + thinkMillis() * 1000000L;
+        final int[] before = new int[trees.length];
+        for (int t = 0; t < trees.length; t++)
+        {
+            before[t] = trees[t].getRootVisits();
+        }
+        Future<?>[] running = new Future<?>[threads];
+        for (int t = 1; t < threads; t++)
+        {
+            final MCTSTree tree = trees[mode == ROOT_PARALLEL ? t : 0];
+            running[t] = helpers.submit(new Runnable() {
+                    public void run()
+                    {
+                        grow(tree, deadline);
+                    }
+                });
+        }
+        grow(trees[0], deadline);
+        for (int t = 1; t < threads; t++)
+        {
+            try
+            {
+                running[t].get();
+            }
+            catch (Exception e)
+            {
+                throw new IllegalStateException("An MCTS thread failed", e);
+            }
+        }
+
+        lastPlayouts = 0;
+        for (int t = 0; t < trees.length; t++)
+        {
+            lastPlayouts += trees[t].getRootVisits() - before[t];
+        }
+        int best = -1;
+        long bestVisits = -1;
+        for (int c = 0; c < myGame.getColumnCount(); c++)
+        {
+            if (!myGame.isPlayable(c))
+            {
+                continue;
+            }
+            long visits = 0;
+            for (MCTSTree tree : trees)
+            {
+                visits += tree.getRootVisits(c);
+            }
+            if (visits > bestVisits)
+            {
+                bestVisits = visits;
+                best = c;
+            }
+        }
+        lastMove = best;
+        return best;
+    }
+
+    /**
+     * Works out how long to think about this move: the agent's own budget, cut down to share
+     * what is left on the game clock between the moves still to come, and to leave a margin
+     * before the move's deadline, as MyAgent does.
+     */
+    private long thinkMillis()
+    {
+        long millis = moveMillis;
+        long clock = getClockLeft();
+        if (clock != NO_LIMIT)
+        {
+            int empty = myGame.getColumnCount() * myGame.getRowCount() - myGame.getTokenCount();
+            millis = Math.min(millis, clock / Math.max(1, (empty + 1) / 2));    // at most this many moves are left
+        }
+        long left = getTimeLeft();
+        if (left != NO_LIMIT)
+        {
+            millis = Math.min(millis, left - Math.max(left / 10, SAFETY_MILLIS));
+        }
+        return Math.max(1, millis);
+    }
+
+    /**
+     * Runs playouts on one tree until the deadline, on a private copy of the game.
+     */
+    private void grow(MCTSTree tree, long deadline)
+    {
+        Connect4Game board = new Connect4Game(myGame);
+        int[] path = new int[board.getColumnCount() * board.getRowCount() + 1];
+        do
+        {
+            for (int i = 0; i < 64; i++)
+            {
+                tree.playout(board, iAmRed, path);
+            }
+        }
+        while (System.nanoTime() - deadline < 0);
+    }
+
+    /**
+     * Makes sure the trees are rooted at the current position, reusing them if the game has
+     * only moved on by this agent's last move and one reply.
+     */
+    private void prepareTrees()
+    {
+        if (trees == null || boardColumns != myGame.getColumnCount() || boardRows != myGame.getRowCount())
+        {
+            int count = (mode == ROOT_PARALLEL) ? threads : 1;
+            trees = new MCTSTree[count];
+            for (int t = 0; t < count; t++)
+            {
+                trees[t] = new MCTSTree(treeCapacity(count), myGame.getColumnCount());
+            }
+            boardColumns = myGame.getColumnCount();
+            boardRows = myGame.getRowCount();
+            treeRoot = new Connect4Game(myGame);
+            return;
+        }
+        int reply = (treeRoot == null) ? -1 : findReply();
+        for (MCTSTree tree : trees)
+        {
+            if (reply < 0)
+            {
+                tree.reset();
+            }
+            else
+            {
+                tree.advance(lastMove, reply);
+            }
+        }
+        treeRoot = new Connect4Game(myGame);
+    }
+
+    /**
+     * Works out how many nodes each tree may hold: room for what the threads growing it could
+     * add in a move's time, but at least the root and two plies below it, and no more than a
+     * share of NODE_CAPACITY.
+     */
+    private int treeCapacity(int count)
+    {
+        long columns = myGame.getColumnCount();
+        long nodes = Math.max(1, moveMillis) * NODES_PER_MILLI * (threads / count);
+        nodes = Math.max(nodes, 1 + columns + columns * columns);
+        return (int) Math.min(nodes, NODE_CAPACITY / count);
+    }
+
+    /**
+     * Works out the opponent's reply to this agent's last move, by replaying that move on the
+     * old root position and finding the one column that has grown since.
+     * 
+     * @return the opponent's column, or -1 if the game is not the old root plus two moves.
+     */
+    private int findReply()
+    {
+        Connect4Game expected = new Connect4Game(treeRoot);
+        if (expected.getTokenCount() + 2 != myGame.getTokenCount() || expected.drop(lastMove, iAmRed) < 0)
+        {
+            return -1;
+        }
+        for (int c = 0; c < myGame.getColumnCount(); c++)
+        {
+            if (myGame.height(c) == expected.height(c) + 1)
+            {
+                expected.drop(c, !iAmRed);
+                return expected.getHash() == myGame.getHash() ? c : -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Finds a column where a player can win at once.
+     * 
+     * @param red the player to check.
+     * @return the column, or -1 if there is none.
+     */
+    private int immediateMove(boolean red)
+    {
+        Connect4Game board = new Connect4Game(myGame);
+        for (int c = 0; c < board.getColumnCount(); c++)
+        {
+            if (board.drop(c, red) >= 0)
+            {
+                if (board.getWinner() != 'N')
+                {
+                    return c;
+                }
+                board.undo();
+            }
+        }
+        return -1;
+    }
+}
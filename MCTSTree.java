@@ -0,0 +1,446 @@
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * A Monte Carlo search tree stored in preallocated arrays instead of node objects.
+ * 
+ * Node 0 is the root. The children of a node are stored next to each other, so a node only
+ * needs to know where its first child is and how many children it has. Each node records the
+ * column played to reach it, how many playouts went through it, and their score in half
+ * points (2 for a win, 1 for a draw) from the point of view of the player who made that move.
+ * 
+ * Several threads can run playouts on the same tree at once. A thread adds a visit to every
+ * node on its way down, before it knows the result (a "virtual loss"), which steers the other
+ * threads towards different parts of the tree until the result is added on the way back up.
+ * Only one thread can expand a node; the others carry on with a playout from it instead.
+ * 
+ * When the game moves on, advance() copies the part of the tree below the new root out into a
+ * spare tree just big enough for it, and back to the front of the arrays, so the nodes of the
+ * discarded branches are reused.
+ * 
+ * Your agent will not need to use this class directly; see MCTSAgent.
+ */
+public class MCTSTree
+{
+    private static final int UNEXPANDED = -1;   // firstChild of a node whose children have not been created
+    private static final int EXPANDING = -2;    // firstChild of a node a thread is creating children for
+    private static final double EXPLORATION = 1.4;  // the UCT exploration constant
+
+    private final int capacity; // the most nodes the tree can hold
+    private final int columnCount;  // the number of columns in the game board
+    private AtomicInteger size; // the number of nodes in use
+    private AtomicIntegerArray firstChild;  // for each node, the index of its first child, or UNEXPANDED or EXPANDING
+    private short[] childCount; // for each node, how many children it has
+    private short[] column; // for each node, the column played to reach it
+    private AtomicIntegerArray visits;  // for each node, the number of playouts through it
+    private AtomicIntegerArray score;   // for each node, the half points won by the player who moved into it
+    private MCTSTree spare; // what advance() copies the kept nodes into; made when first needed, as big as the most nodes kept so far
+    private int[] queue;    // scratch space for advance(): pairs of (old node, new node) waiting to have their children copied
+
+    /**
+     * Creates an empty tree.
+     * 
+     * @param capacity the most nodes the tree can hold.
+     * @param columns the number of columns in the game board, at most Short.MAX_VALUE.
+     * @throws IllegalArgumentException if the board has too many columns.
+     */
+    public MCTSTree(int capacity, int columns)
+    {
+        if (columns > Short.MAX_VALUE)
+        {
+            throw new IllegalArgumentException("A tree can only be made for up to " + Short.MAX_VALUE
+                + " columns, not " + columns);
+        }
+        this.capacity = Math.max(capacity, columns + 1);
+        this.columnCount = columns;
+        size = new AtomicInteger();
+        firstChild = new AtomicIntegerArray(this.capacity);
+        childCount = new short[this.capacity];
+        column = new short[this.capacity];
+        visits = new AtomicIntegerArray(this.capacity);
+        score = new AtomicIntegerArray(this.capacity);
+        reset();
+    }
+
+    /**
+     * Throws away every node except a fresh root.
+     */
+    public void reset()
+    {
+        size.set(1);
+        firstChild.set(0, UNEXPANDED);
+        childCount[0] = 0;
+        column[0] = -1;
+        visits.set(0, 0);
+        score.set(0, 0);
+    }
+
+    /**
+     * Returns the number of nodes in use.
+     * 
+     * @return the number of nodes.
+     */
+    public int getSize()
+    {
+        return size.get();
+    }
+
+    /**
+     * Returns the number of playouts that have gone through the root.
+     * 
+     * @return the number of playouts.
+     */
+    public int getRootVisits()
+    {
+        return visits.get(0);
+    }
+
+    /**
+     * Returns the number of playouts that started with a move in a column.
+     * 
+     * @param c the column.
+     * @return the number of playouts, or 0 if the move is not in the tree.
+     */
+    public int getRootVisits(int c)
+    {
+        int child = findChild(0, c);
+        return child < 0 ? 0 : visits.get(child);
+    }
+
+    /**
+     * Runs one playout: walks down the tree choosing moves by UCT, adds children to the node
+     * it reaches, plays the rest of the game with a light policy, and adds the result to every
+     * node on the way. The board is left as it was.
+     * 
+     * @param board a private copy of the root position.
+     * @param redToMove true if red is to move at the root.
+     * @param path scratch space for the nodes visited, with room for every slot on the board plus one.
+     */
+    public void playout(Connect4Game board, boolean redToMove, int[] path)
+    {
+        int node = 0;
+        int length = 0;
+        boolean side = redToMove;   // the player to move at node
+        char winner = 'N';
+        boolean finished = false;
+        path[length++] = node;
+        visits.incrementAndGet(node);
+        while (true)
+        {
+            int first = firstChild.get(node);
+            if (first < 0)
+            {
+                if (first == UNEXPANDED && (node == 0 || visits.get(node) > 1) && expand(node, board))
+                {
+                    continue;   // walk into one of the new children
+                }
+                break;
+            }
+            int child = select(node, first);
+            board.drop(column[child], side);
+            visits.incrementAndGet(child);  // the virtual loss: counted as a visit with no score yet
+            path[length++] = child;
+            node = child;
+            winner = board.getWinner();
+            if (winner != 'N' || board.boardFull())
+            {
+                finished = true;
+                break;
+            }
+            side = !side;
+        }
+        int moves = 0;
+        if (!finished)
+        {
+            moves = board.getTokenCount();
+            winner = rollout(board, side);
+            moves = board.getTokenCount() - moves;
+        }
+        for (int i = 0; i < moves + length - 1; i++)
+        {
+            board.undo();
+        }
+        boolean mover = !redToMove;   // the player who moved into path[0]; it has no move, so this is only for alternation
+        for (int i = 0; i < length; i++)
+        {
+            int points = (winner == 'N') ? 1 : ((winner == 'R') == mover ? 2 : 0);
+            score.addAndGet(path[i], points);
+            mover = !mover;
+        }
+    }
+
+    /**
+     * Moves the root down two plies, to the position after the given moves, keeping what the
+     * tree already knows about it. The kept nodes are copied into the spare tree and back to
+     * the front of this one, so the nodes of the other branches can be used again.
+     * 
+     * @param first the column played from the root.
+     * @param second the column played in reply.
+     * @return true if the tree was advanced; false if the new position was not in the tree,
+     *         in which case the tree is reset to an empty root.
+     */
+    public boolean advance(int first, int second)
+    {
+        int child = findChild(0, first);
+        int grandchild = child < 0 ? -1 : findChild(child, second);
+        if (grandchild < 0)
+        {
+            reset();
+            return false;
+        }
+        int kept = countBelow(grandchild);
+        if (spare == null || spare.capacity < kept)
+        {
+            spare = new MCTSTree(Math.min(capacity, Math.max(kept, spare == null ? 0 : spare.capacity * 2)),
+                columnCount);
+        }
+        if (queue.length < kept * 2)
+        {
+            queue = new int[kept * 2];
+        }
+        MCTSTree target = spare;
+        int head = 0, tail = 0;
+        target.copyNode(this, grandchild, 0);
+        int next = 1;
+        queue[tail++] = grandchild;
+        queue[tail++] = 0;
+        while (head < tail)
+        {
+            int from = queue[head++];
+            int to = queue[head++];
+            int firstFrom = firstChild.get(from);
+            if (firstFrom < 0)
+            {
+                target.firstChild.set(to, UNEXPANDED);
+                continue;
+            }
+            int count = childCount[from];
+            target.firstChild.set(to, next);
+            for (int k = 0; k < count; k++)
+            {
+                target.copyNode(this, firstFrom + k, next + k);
+                if (firstChild.get(firstFrom + k) >= 0)
+                {
+                    queue[tail++] = firstFrom + k;
+                    queue[tail++] = next + k;
+                }
+                else
+                {
+                    target.firstChild.set(next + k, UNEXPANDED);
+                }
+            }
+            next += count;
+        }
+        target.column[0] = -1;
+        copyBack(target, next);
+        return true;
+    }
+
+    /**
+     * Creates the children of a node, one for each playable column, if there is room.
+     * 
+     * @return true if the children were created, false if another thread got there first or
+     *         the tree is full.
+     */
+    private boolean expand(int node, Connect4Game board)
+    {
+        if (!firstChild.compareAndSet(node, UNEXPANDED, EXPANDING))
+        {
+            return false;
+        }
+        int count = 0;
+        for (int c = 0; c < columnCount; c++)
+        {
+            if (board.isPlayable(c))
+            {
+                count++;
+            }
+        }
+        int first = size.getAndAdd(count);
+        if (count == 0 || first + count > capacity)
+        {
+            size.addAndGet(-count);
+            firstChild.set(node, UNEXPANDED);
+            return false;
+        }
+        int k = first;
+        for (int c = 0; c < columnCount; c++)
+        {
+            if (board.isPlayable(c))
+            {
+                firstChild.set(k, UNEXPANDED);
+                childCount[k] = 0;
+                column[k] = (short) c;
+                visits.set(k, 0);
+                score.set(k, 0);
+                k++;
+            }
+        }
+        childCount[node] = (short) count;
+        firstChild.set(node, first);    // publishes the children to the other threads
+        return true;
+    }
+
+    /**
+     * Chooses the child of a node with the best UCT value. Unvisited children come first.
+     */
+    private int select(int node, int first)
+    {
+        int count = childCount[node];
+        double logParent = Math.log(Math.max(1, visits.get(node)));
+        int best = first;
+        double bestValue = Double.NEGATIVE_INFINITY;
+        for (int child = first; child < first + count; child++)
+        {
+            int n = visits.get(child);
+            if (n == 0)
+            {
+                return child;
+            }
+            double value = score.get(child) / (2.0 * n) + EXPLORATION * Math.sqrt(logParent / n);
+            if (value > bestValue)
+            {
+                bestValue = value;
+                best = child;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Plays the game out from the current position. Each move wins at once if it can, blocks
+     * the opponent's immediate win if there is one, and is random otherwise. The moves are left
+     * on the board for the caller to undo.
+     * 
+     * @return 'R' or 'Y' for the winner, or 'N' for a draw.
+     */
+    private char rollout(Connect4Game board, boolean side)
+    {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (!board.boardFull())
+        {
+            int choice = -1;
+            for (int c = 0; c < columnCount && choice < 0; c++)    // a winning move
+            {
+                if (board.drop(c, side) >= 0)
+                {
+                    if (board.getWinner() != 'N')
+                    {
+                        return board.getWinner();
+                    }
+                    board.undo();
+                }
+            }
+            for (int c = 0; c < columnCount && choice < 0; c++)    // a move that blocks the opponent
+            {
+                if (board.drop(c, !side) >= 0)
+                {
+                    if (board.getWinner() != 'N')
+                    {
+                        choice = c;
+                    }
+                    board.undo();
+                }
+            }
+            while (choice < 0)
+            {
+                int c = random.nextInt(columnCount);
+                if (board.isPlayable(c))
+                {
+                    choice = c;
+                }
+            }
+            board.drop(choice, side);
+            if (board.getWinner() != 'N')
+            {
+                return board.getWinner();
+            }
+            side = !side;
+        }
+        return 'N';
+    }
+
+    /**
+     * Finds the child of a node reached by playing a column.
+     * 
+     * @return the child, or -1 if the node has no such child.
+     */
+    private int findChild(int node, int c)
+    {
+        int first = firstChild.get(node);
+        if (first < 0)
+        {
+            return -1;
+        }
+        for (int child = first; child < first + childCount[node]; child++)
+        {
+            if (column[child] == c)
+            {
+                return child;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Copies the statistics of one node of another tree into a node of this tree.
+     */
+    private void copyNode(MCTSTree from, int fromNode, int toNode)
+    {
+        childCount[toNode] = from.childCount[fromNode];
+        column[toNode] = from.column[fromNode];
+        visits.set(toNode, from.visits.get(fromNode));
+        score.set(toNode, from.score.get(fromNode));
+    }
+
+    /**
+     * Counts the nodes of the subtree below a node, including the node itself, using the
+     * queue as a stack.
+     */
+    private int countBelow(int node)
+    {
+        if (queue == null)
+        {
+            queue = new int[Math.max(64, columnCount * 2)];
+        }
+        int count = 0;
+        int top = 0;
+        queue[top++] = node;
+        while (top > 0)
+        {
+            int n = queue[--top];
+            count++;
+            int first = firstChild.get(n);
+            if (first >= 0)
+            {
+                if (top + childCount[n] > queue.length)
+                {
+                    queue = Arrays.copyOf(queue, Math.max(queue.length * 2, top + childCount[n]));
+                }
+                for (int k = 0; k < childCount[n]; k++)
+                {
+                    queue[top++] = first + k;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Copies the first nodes of another tree over this tree's, and makes them the whole tree.
+     */
+    private void copyBack(MCTSTree from, int count)
+    {
+        System.arraycopy(from.childCount, 0, childCount, 0, count);
+        System.arraycopy(from.column, 0, column, 0, count);
+        for (int i = 0; i < count; i++)
+        {
+            firstChild.set(i, from.firstChild.get(i));
+            visits.set(i, from.visits.get(i));
+            score.set(i, from.score.get(i));
+        }
+        size.set(count);
+    }
+}
@@ -8,11 +8,11 @@ public class Main
 {
     public static void main(String[] args)
     {
-        Connect4Game game = new Connect4Game(7, 6); // create the game; these sizes can be altered for larger or smaller games
+        Connect4Game game = new Connect4Game(7, 6); // create the game; these sizes can be altered for larger or smaller games, and a third number changes how many in a row win
         Agent redPlayer = new MyAgent(game, true); // create the red player, any subclass of Agent
         Agent yellowPlayer = new AdvancedAgent(game, false); // create the yellow player, any subclass of Agent
         
-        Connect4Frame mainframe = new Connect4Frame(game, redPlayer, yellowPlayer); // create the game window
+        Connect4Frame mainframe = new Connect4Frame(game, redPlayer, yellowPlayer); // create the game window; a fourth argument, such as new TimeControl(1000, 0, 0), limits how long the players may think
     }
 }
     
\ No newline at end of file
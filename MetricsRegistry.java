@@ -0,0 +1,386 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanParameterInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+/**
+ * Named measurements of the program while it runs: how long things take, how often things
+ * happen, and how often a lookup finds what it wants. The game drivers record every agent's
+ * move times, validation and win-check times, and the number of games played; search agents
+ * can add their own, such as nodes searched and table hit rates. An agent's metrics are named
+ * by its color as well as its name (see Agent.metricName()), so that an agent playing a copy of
+ * itself has metrics of its own.
+ * 
+ * There are three kinds of metric, each made the first time its name is asked for:
+ * - a timer, a LatencyHistogram of nanoseconds, reported as its count, mean, 50th and 99th
+ *   percentiles and maximum in microseconds;
+ * - a counter, reported as its total and its rate per second since the registry was reset;
+ * - a ratio, a count of hits out of a count of tries, reported as both and their ratio.
+ * 
+ * Once register() has been called, every metric can be read over JMX, for example with
+ * jconsole, as the attributes of the MBean "connect4:type=Metrics", and its operations write a
+ * CSV snapshot or reset everything. writeCsv() does the same from code.
+ * 
+ * Your agent MAY use this class to publish its own measurements, through getDefault().
+ */
+public class MetricsRegistry implements DynamicMBean
+{
+    public static final String OBJECT_NAME = "connect4:type=Metrics";
+
+    private static final MetricsRegistry DEFAULT = new MetricsRegistry();
+
+    private final ConcurrentMap<String, LatencyHistogram> timers = new ConcurrentHashMap<String, LatencyHistogram>();
+    private final ConcurrentMap<String, AtomicLong> counters = new ConcurrentHashMap<String, AtomicLong>();
+    private final ConcurrentMap<String, AtomicLong[]> ratios = new ConcurrentHashMap<String, AtomicLong[]>();   // [0] hits, [1] tries
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private volatile boolean cpuTiming; // whether cpuTime() reads the thread's CPU time, which costs about half a microsecond
+    private volatile long startNanos = System.nanoTime();   // when counting started, for rates
+
+    /**
+     * Creates an empty registry. Most code should use getDefault() instead, so everything ends
+     * up in one place.
+     */
+    public MetricsRegistry()
+    {
+        cpuTiming = threads.isCurrentThreadCpuTimeSupported();
+    }
+
+    /**
+     * Returns the registry the game drivers record into.
+     * 
+     * @return the shared registry.
+     */
+    public static MetricsRegistry getDefault()
+    {
+        return DEFAULT;
+    }
+
+    /**
+     * Returns a timer, making it if it does not exist yet. Keep the timer rather than looking
+     * it up every time something is timed.
+     * 
+     * @param name the timer's name.
+     * @return the timer.
+     */
+    public LatencyHistogram timer(String name)
+    {
+        LatencyHistogram timer = timers.get(name);
+        if (timer == null)
+        {
+            timers.putIfAbsent(name, new LatencyHistogram());
+            timer = timers.get(name);
+        }
+        return timer;
+    }
+
+    /**
+     * Returns a counter, making it if it does not exist yet.
+     * 
+     * @param name the counter's name.
+     * @return the counter.
+     */
+    public AtomicLong counter(String name)
+    {
+        AtomicLong counter = counters.get(name);
+        if (counter == null)
+        {
+            counters.putIfAbsent(name, new AtomicLong());
+            counter = counters.get(name);
+        }
+        return counter;
+    }
+
+    /**
+     * Adds to a ratio, making it if it does not exist yet.
+     * 
+     * @param name the ratio's name.
+     * @param hits the number of tries that succeeded.
+     * @param tries the number of tries.
+     */
+    public void addRatio(String name, long hits, long tries)
+    {
+        AtomicLong[] ratio = ratios.get(name);
+        if (ratio == null)
+        {
+            ratios.putIfAbsent(name, new AtomicLong[] { new AtomicLong(), new AtomicLong() });
+            ratio = ratios.get(name);
+        }
+        ratio[0].addAndGet(hits);
+        ratio[1].addAndGet(tries);
+    }
+
+    /**
+     * Returns the CPU time the current thread has used, for timing work by the CPU it takes
+     * rather than the time that passes.
+     * 
+     * @return the time in nanoseconds, or 0 if CPU timing is off.
+     */
+    public long cpuTime()
+    {
+        return cpuTiming ? threads.getCurrentThreadCpuTime() : 0;
+    }
+
+    /**
+     * Turns CPU timing on or off. It is on by default where the JVM supports it; turn it off
+     * where moves take only a few microseconds and reading the CPU time would slow them down.
+     * 
+     * @param on true to time CPU use.
+     */
+    public void setCpuTiming(boolean on)
+    {
+        cpuTiming = on && threads.isCurrentThreadCpuTimeSupported();
+    }
+
+    /**
+     * Checks whether CPU timing is on.
+     * 
+     * @return true if cpuTime() reads the thread's CPU time.
+     */
+    public boolean isCpuTiming()
+    {
+        return cpuTiming;
+    }
+
+    /**
+     * Sets every metric back to zero, and starts the rates again from now.
+     */
+    public void reset()
+    {
+        for (LatencyHistogram timer : timers.values())
+        {
+            timer.reset();
+        }
+        for (AtomicLong counter : counters.values())
+        {
+            counter.set(0);
+        }
+        for (AtomicLong[] ratio : ratios.values())
+        {
+            ratio[0].set(0);
+            ratio[1].set(0);
+        }
+        startNanos = System.nanoTime();
+    }
+
+    /**
+     * Makes the registry readable over JMX as OBJECT_NAME. Doing this again does nothing.
+     * 
+     * @throws JMException if the MBean server will not take it.
+     */
+    public void register() throws JMException
+    {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try
+        {
+            server.registerMBean(this, new ObjectName(OBJECT_NAME));
+        }
+        catch (InstanceAlreadyExistsException e)
+        {
+        }
+    }
+
+    /**
+     * Writes every metric to a CSV file, one row per metric, sorted by name. Times are in
+     * microseconds; columns that do not apply to a kind of metric are left empty.
+     * 
+     * @param file the file to write.
+     * @throws IOException if the file cannot be written.
+     */
+    public void writeCsv(File file) throws IOException
+    {
+        try (PrintWriter out = new PrintWriter(file, "UTF-8"))
+        {
+            out.println("name,kind,count,per_second,hits,ratio,mean_us,p50_us,p99_us,max_us");
+            double seconds = (System.nanoTime() - startNanos) / 1e9;
+            for (Map.Entry<String, AtomicLong> e : new TreeMap<String, AtomicLong>(counters).entrySet())
+            {
+                long count = e.getValue().get();
+                out.println(String.format(Locale.ROOT, "%s,counter,%d,%.3f,,,,,,", e.getKey(), count, count / seconds));
+            }
+            for (Map.Entry<String, AtomicLong[]> e : new TreeMap<String, AtomicLong[]>(ratios).entrySet())
+            {
+                long hits = e.getValue()[0].get();
+                long tries = e.getValue()[1].get();
+                out.println(String.format(Locale.ROOT, "%s,ratio,%d,,%d,%.6f,,,,", e.getKey(), tries, hits,
+                    tries > 0 ? (double) hits / tries : 0));
+            }
+            for (Map.Entry<String, LatencyHistogram> e : new TreeMap<String, LatencyHistogram>(timers).entrySet())
+            {
+                LatencyHistogram h = e.getValue();
+                out.println(String.format(Locale.ROOT, "%s,timer,%d,,,,%.3f,%.3f,%.3f,%.3f", e.getKey(), h.getCount(),
+                    h.getMean() / 1e3, h.getPercentile(0.5) / 1e3, h.getPercentile(0.99) / 1e3, h.getMax() / 1e3));
+            }
+        }
+    }
+
+    /**
+     * Reads one JMX attribute: a metric's name, a dot, and what to read, such as
+     * "MyAgent.move.p99Micros" or "games.perSecond".
+     */
+    public Object getAttribute(String attribute) throws AttributeNotFoundException
+    {
+        int dot = attribute.lastIndexOf('.');
+        String name = dot < 0 ? "" : attribute.substring(0, dot);
+        String part = attribute.substring(dot + 1);
+        LatencyHistogram timer = timers.get(name);
+        if (timer != null)
+        {
+            switch (part)
+            {
+                case "count": return timer.getCount();
+                case "meanMicros": return timer.getMean() / 1e3;
+                case "p50Micros": return timer.getPercentile(0.5) / 1e3;
+                case "p99Micros": return timer.getPercentile(0.99) / 1e3;
+                case "maxMicros": return timer.getMax() / 1e3;
+            }
+        }
+        AtomicLong counter = counters.get(name);
+        if (counter != null)
+        {
+            switch (part)
+            {
+                case "count": return counter.get();
+                case "perSecond": return counter.get() / ((System.nanoTime() - startNanos) / 1e9);
+            }
+        }
+        AtomicLong[] ratio = ratios.get(name);
+        if (ratio != null)
+        {
+            long tries = ratio[1].get();
+            switch (part)
+            {
+                case "hits": return ratio[0].get();
+                case "tries": return tries;
+                case "ratio": return tries > 0 ? (double) ratio[0].get() / tries : 0.0;
+            }
+        }
+        throw new AttributeNotFoundException(attribute);
+    }
+
+    /**
+     * Reads several JMX attributes, leaving out any that do not exist.
+     */
+    public AttributeList getAttributes(String[] attributes)
+    {
+        AttributeList list = new AttributeList();
+        for (String attribute : attributes)
+        {
+            try
+            {
+                list.add(new Attribute(attribute, getAttribute(attribute)));
+            }
+            catch (AttributeNotFoundException e)
+            {
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Refuses to change an attribute: every metric is read-only.
+     */
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException
+    {
+        throw new AttributeNotFoundException(attribute.getName() + " is read-only");
+    }
+
+    /**
+     * Refuses to change attributes: every metric is read-only.
+     */
+    public AttributeList setAttributes(AttributeList attributes)
+    {
+        return new AttributeList();
+    }
+
+    /**
+     * Runs a JMX operation: writeCsv(path) or reset().
+     */
+    public Object invoke(String action, Object[] params, String[] signature) throws ReflectionException
+    {
+        try
+        {
+            if (action.equals("writeCsv") && params != null && params.length == 1)
+            {
+                writeCsv(new File((String) params[0]));
+                return null;
+            }
+            if (action.equals("reset"))
+            {
+                reset();
+                return null;
+            }
+        }
+        catch (IOException e)
+        {
+            throw new ReflectionException(e, "Could not write " + params[0]);
+        }
+        throw new ReflectionException(new NoSuchMethodException(action));
+    }
+
+    /**
+     * Describes the MBean: an attribute for each part of each metric that exists right now, and
+     * the two operations.
+     */
+    public MBeanInfo getMBeanInfo()
+    {
+        List<MBeanAttributeInfo> attributes = new ArrayList<MBeanAttributeInfo>();
+        for (String name : new TreeMap<String, LatencyHistogram>(timers).keySet())
+        {
+            attributes.add(attribute(name + ".count", "long", "times recorded"));
+            attributes.add(attribute(name + ".meanMicros", "double", "mean time in microseconds"));
+            attributes.add(attribute(name + ".p50Micros", "double", "median time in microseconds"));
+            attributes.add(attribute(name + ".p99Micros", "double", "99th percentile time in microseconds"));
+            attributes.add(attribute(name + ".maxMicros", "double", "longest time in microseconds"));
+        }
+        for (String name : new TreeMap<String, AtomicLong>(counters).keySet())
+        {
+            attributes.add(attribute(name + ".count", "long", "total since reset"));
+            attributes.add(attribute(name + ".perSecond", "double", "rate per second since reset"));
+        }
+        for (String name : new TreeMap<String, AtomicLong[]>(ratios).keySet())
+        {
+            attributes.add(attribute(name + ".hits", "long", "successful tries"));
+            attributes.add(attribute(name + ".tries", "long", "tries"));
+            attributes.add(attribute(name + ".ratio", "double", "hits divided by tries"));
+        }
+        MBeanOperationInfo[] operations = {
+            new MBeanOperationInfo("writeCsv", "Writes every metric to a CSV file",
+                new MBeanParameterInfo[] { new MBeanParameterInfo("path", "java.lang.String", "the file to write") },
+                "void", MBeanOperationInfo.ACTION),
+            new MBeanOperationInfo("reset", "Sets every metric back to zero", new MBeanParameterInfo[0], "void",
+                MBeanOperationInfo.ACTION)
+        };
+        return new MBeanInfo(getClass().getName(), "Connect 4 game and agent metrics",
+            attributes.toArray(new MBeanAttributeInfo[attributes.size()]), null, operations, null);
+    }
+
+    /**
+     * Describes one read-only attribute.
+     */
+    private static MBeanAttributeInfo attribute(String name, String type, String description)
+    {
+        return new MBeanAttributeInfo(name, type, description, true, false, false);
+    }
+}
@@ -0,0 +1,155 @@
+import java.util.Arrays;
+
+/**
+ * Decides which order a search tries its moves in. Alpha-beta prunes the most when the best
+ * move is tried first, so the order matters as much as the speed of the search itself.
+ * 
+ * The move the caller already thinks is best (the previous iteration's best move at the root,
+ * or the transposition table's move below it) always goes first. The other moves are ranked by
+ * how close the column is to the center, plus the history score of the slot the token would
+ * land in, which adds up the cutoffs that slot has caused anywhere in the search, plus a small
+ * bonus for the two killer moves that most recently caused a cutoff at the same ply. Killers
+ * and history are kept across the iterations of one search, and cleared by newSearch().
+ * 
+ * In Connect 4 the same column is rarely the refutation of its sibling positions, so killers
+ * only break ties: ranking them above the center order made searches visit more nodes.
+ * 
+ * A search can be given a subclass to try a different ordering.
+ */
+public class MoveOrderer
+{
+    private static final int HASH_MOVE_SCORE = Integer.MAX_VALUE;
+    private static final int CENTER_WEIGHT = 150;   // the score for each half-column closer to the center
+    private static final int KILLER_BONUS = 15; // the score added for the older killer; the newer one gets double
+    private static final int MAX_HISTORY = Integer.MAX_VALUE / 4;   // keeps history scores from overflowing
+
+    protected final int columnCount;
+    protected final int rowCount;
+    protected final int[] centerOrder;  // the columns, from the center outwards
+    protected final int[] centerScore;  // for each column, its score for being close to the center
+    protected final int[][] killers;    // the two most recent cutoff moves at each ply
+    protected final int[][] history;    // for each color, the cutoff score of each (column, row) slot
+    private final int[] scores; // scratch space for the scores of the moves being ordered
+
+    /**
+     * Creates a move orderer for a board size.
+     * 
+     * @param columns the number of columns in the game board.
+     * @param rows the number of rows in the game board.
+     */
+    public MoveOrderer(int columns, int rows)
+    {
+        columnCount = columns;
+        rowCount = rows;
+        centerOrder = new int[columns];
+        centerScore = new int[columns];
+        for (int k = 0; k < columns; k++)   // center first, then alternating outwards
+        {
+            int offset = (k + 1) / 2;
+            centerOrder[k] = (columns - 1) / 2 + ((k % 2 == 1) ? offset : -offset);
+            centerScore[k] = CENTER_WEIGHT * (columns - Math.abs(2 * k - (columns - 1)));
+        }
+        killers = new int[columns * rows + 1][2];
+        history = new int[2][columns * rows];
+        scores = new int[columns];
+        newSearch();
+    }
+
+    /**
+     * Forgets the killer moves and history of the previous search.
+     */
+    public void newSearch()
+    {
+        for (int[] pair : killers)
+        {
+            pair[0] = -1;
+            pair[1] = -1;
+        }
+        Arrays.fill(history[0], 0);
+        Arrays.fill(history[1], 0);
+    }
+
+    /**
+     * Returns the columns from the center outwards, for callers that just want a sensible
+     * static order.
+     * 
+     * @return the columns, center first; the array must not be changed.
+     */
+    public int[] getCenterOrder()
+    {
+        return centerOrder;
+    }
+
+    /**
+     * Writes the playable columns into an array, best first.
+     * 
+     * @param moves the array to fill; it must have room for every column.
+     * @param game the position the moves are for.
+     * @param ply how many plies from the root the position is.
+     * @param red true if red is to move.
+     * @param bestMove the move to try first, or any unplayable value for none.
+     * @return how many moves were written.
+     */
+    public int order(int[] moves, Connect4Game game, int ply, boolean red, int bestMove)
+    {
+        int[] slotHistory = history[red ? 0 : 1];
+        int[] plyKillers = killers[ply];
+        int count = 0;
+        for (int c : centerOrder)
+        {
+            if (!game.isPlayable(c))
+            {
+                continue;
+            }
+            int score;
+            if (c == bestMove)
+            {
+                score = HASH_MOVE_SCORE;
+            }
+            else
+            {
+                score = centerScore[c] + slotHistory[c * rowCount + game.height(c)];
+                if (c == plyKillers[0])
+                {
+                    score += 2 * KILLER_BONUS;
+                }
+                else if (c == plyKillers[1])
+                {
+                    score += KILLER_BONUS;
+                }
+            }
+            int k = count++;    // insertion sort; the center order breaks ties because it is the scan order
+            while (k > 0 && scores[k - 1] < score)
+            {
+                scores[k] = scores[k - 1];
+                moves[k] = moves[k - 1];
+                k--;
+            }
+            scores[k] = score;
+            moves[k] = c;
+        }
+        return count;
+    }
+
+    /**
+     * Records that a move caused a beta cutoff.
+     * 
+     * @param column the column that was played.
+     * @param height how many tokens were in the column before the move.
+     * @param ply how many plies from the root the position is.
+     * @param red true if red made the move.
+     * @param depth how many plies were left to search below the position.
+     */
+    public void recordCutoff(int column, int height, int ply, boolean red, int depth)
+    {
+        int[] plyKillers = killers[ply];
+        if (plyKillers[0] != column)
+        {
+            plyKillers[1] = plyKillers[0];
+            plyKillers[0] = column;
+        }
+        int[] slotHistory = history[red ? 0 : 1];
+        int slot = column * rowCount + height;
+        slotHistory[slot] = Math.min(slotHistory[slot] + depth * depth, MAX_HISTORY);
+    }
+}
@@ -3,7 +3,16 @@ import java.util.Random;
 public class MyAgent extends Agent
 {
     Random r;
-    private static final int SLOTS_TO_CHECK = 3;
+    ParallelSearch search;  // the search used to choose moves; made on the first search, since the book or solver may answer every move
+    OpeningBook book;   // looked up before searching; null for no book
+    Connect4Solver solver;  // looked up before searching, and used near the end of the game; null for none
+    private long moveMillis;    // how long to search each move when there is time; 0 or less to use the one-move checks instead
+    private int threads;    // how many threads the search uses
+    private long nodeLimit; // the most nodes each search may visit; 0 for no limit
+    private static final long DEFAULT_MOVE_MILLIS = 500;    // how long to search each move by default
+    private static final int TABLE_MEGABYTES = 16;  // the size of the search's transposition table
+    private static final int SOLVE_SLOTS = 16;  // solve the game exactly once this few slots are left
+    private static final long SAFETY_MILLIS = 20;   // the least time to leave before a move's deadline
     
     /**
      * Constructs a new agent, giving it the game and telling it whether it is Red or Yellow.
@@ -12,9 +21,38 @@ public class MyAgent extends Agent
      * @param iAmRed True if the agent is Red, False if the agent is Yellow.
      */
     public MyAgent(Connect4Game game, boolean iAmRed)
+    {
+        this(game, iAmRed, DEFAULT_MOVE_MILLIS);
+    }
+    
+    /**
+     * Constructs a new agent with a time budget for each move.
+     * 
+     * @param game The game the agent will be playing.
+     * @param iAmRed True if the agent is Red, False if the agent is Yellow.
+     * @param moveMillis How long to search each move, in milliseconds; 0 or less to only look for
+     *        wins and blocks one move ahead and otherwise play randomly.
+     */
+    public MyAgent(Connect4Game game, boolean iAmRed, long moveMillis)
+    {
+        this(game, iAmRed, moveMillis, 1);
+    }
+    
+    /**
+     * Constructs a new agent with a time budget for each move, searching on several threads.
+     * 
+     * @param game The game the agent will be playing.
+     * @param iAmRed True if the agent is Red, False if the agent is Yellow.
+     * @param moveMillis How long to search each move, in milliseconds; 0 or less to only look for
+     *        wins and blocks one move ahead and otherwise play randomly.
+     * @param threads How many threads to search with.
+     */
+    public MyAgent(Connect4Game game, boolean iAmRed, long moveMillis, int threads)
     {
         super(game, iAmRed);
         r = new Random();
+        this.moveMillis = moveMillis;
+        this.threads = threads;
     }
 
     /**
@@ -38,6 +76,45 @@ public class MyAgent extends Agent
      */
     public void move()
     {
+        int bookMove = (book == null) ? -1 : book.findMove(myGame, iAmRed);
+        if (bookMove >= 0 && myGame.isPlayable(bookMove))
+        {
+            moveOnColumn(bookMove);
+            MetricsRegistry.getDefault().counter(metricName("bookMoves")).incrementAndGet();
+            return;
+        }
+        long budget = searchMillis();   // shared by the solver and then the search
+        long started = System.nanoTime();
+        if (solver != null)
+        {
+            int solvedMove = solver.lookup(myGame, iAmRed);
+            int empty = myGame.getColumnCount() * myGame.getRowCount() - myGame.getTokenCount();
+            boolean limited = moveMillis > 0 || getTimeLeft() != NO_LIMIT || getClockLeft() != NO_LIMIT;
+            if (solvedMove < 0 && empty <= SOLVE_SLOTS && (!limited || budget > SAFETY_MILLIS))
+            {
+                // a solve that runs out of time falls back on the search, so leave the search half
+                solver.setTimeLimit(!limited ? 0 : moveMillis > 0 ? budget / 2 : budget);
+                if (solver.solve(myGame, iAmRed) != Connect4Solver.UNKNOWN)
+                {
+                    solvedMove = solver.getBestMove();
+                }
+            }
+            if (solvedMove >= 0 && myGame.isPlayable(solvedMove))
+            {
+                moveOnColumn(solvedMove);
+                MetricsRegistry.getDefault().counter(metricName("solvedMoves")).incrementAndGet();
+                return;
+            }
+        }
+        if (getSearch() != null)
+        {
+            search.setTimeLimit(Math.max(1, budget - (System.nanoTime() - started) / 1000000));
+            moveOnColumn(search.search(myGame, iAmRed));
+            MetricsRegistry metrics = MetricsRegistry.getDefault();
+            metrics.counter(metricName("search.nodes")).addAndGet(search.getNodes());
+            metrics.addRatio(metricName("search.tableHits"), search.getTableHits(), search.getTableProbes());
+            return;
+        }
         int nextMove = 0;
         int redCanWin = getNextMove(iAmRed);
         int yellowCanWin = getNextMove(!iAmRed);
@@ -56,6 +133,99 @@ public class MyAgent extends Agent
         moveOnColumn(nextMove);
     }
 
+    /**
+     * Limits how many nodes each search may visit, as well as how long it may take.
+     * 
+     * @param nodes The node limit, or 0 for no limit.
+     */
+    public void setNodeLimit(long nodes)
+    {
+        nodeLimit = nodes;
+        if (search != null)
+        {
+            search.setNodeLimit(nodes);
+        }
+    }
+    
+    /**
+     * Gives this agent an opening book. While the game is still in the book, the agent plays
+     * the book's move instead of searching.
+     * 
+     * @param book the book to use, or null to stop using one.
+     */
+    public void setOpeningBook(OpeningBook book)
+    {
+        this.book = book;
+    }
+
+    /**
+     * Gives this agent a solver. Before searching, the agent looks the position up in the
+     * solver's store of solved positions, and once only a few slots are left it solves the
+     * rest of the game exactly, adding the result to the store. The solver's time limit is set
+     * before each solve, from the move's share of the time; a solve that runs out of time
+     * leaves the move to the search.
+     * 
+     * @param solver the solver to use, or null to stop using one.
+     */
+    public void setSolver(Connect4Solver solver)
+    {
+        this.solver = solver;
+    }
+
+    /**
+     * Shuts down the search's helper threads and lets go of its transposition table. A later
+     * move makes a new search.
+     */
+    public void close()
+    {
+        if (search != null)
+        {
+            search.shutdown();
+            search = null;
+        }
+    }
+
+    /**
+     * Returns the search used to choose moves, so its depth and speed can be reported. The
+     * search and its transposition table are made the first time they are needed.
+     * 
+     * @return the search, or null if this agent does not search.
+     */
+    public ParallelSearch getSearch()
+    {
+        if (search == null && moveMillis > 0)
+        {
+            search = new ParallelSearch(new TranspositionTable(TABLE_MEGABYTES), threads);
+            search.setTimeLimit(moveMillis);
+            search.setNodeLimit(nodeLimit);
+        }
+        return search;
+    }
+
+    /**
+     * Works out how long to search this move: the agent's own budget, cut down to share what
+     * is left on the game clock between the moves still to come, and to leave a margin before
+     * the move's deadline.
+     * 
+     * @return the time to search, in milliseconds.
+     */
+    private long searchMillis()
+    {
+        long millis = moveMillis;
+        long clock = getClockLeft();
+        if (clock != NO_LIMIT)
+        {
+            int empty = myGame.getColumnCount() * myGame.getRowCount() - myGame.getTokenCount();
+            millis = Math.min(millis, clock / Math.max(1, (empty + 1) / 2));    // at most this many moves are left
+        }
+        long left = getTimeLeft();
+        if (left != NO_LIMIT)
+        {
+            millis = Math.min(millis, left - Math.max(left / 10, SAFETY_MILLIS));
+        }
+        return Math.max(1, millis);
+    }
+
     /**
      * Drops a token into a particular column so that it will fall to the bottom of the column.
      * If the column is already full, nothing will change.
@@ -64,19 +234,7 @@ public class MyAgent extends Agent
      */
     public void moveOnColumn(int columnNumber)
     {
-        int lowestEmptySlotIndex = getLowestEmptyIndex(myGame.getColumn(columnNumber));   // Find the top empty slot in the column// If the column is full, lowestEmptySlot will be -1
-        if (lowestEmptySlotIndex > -1)  // if the column is not full
-        {
-            Connect4Slot lowestEmptySlot = myGame.getColumn(columnNumber).getSlot(lowestEmptySlotIndex);  // get the slot in this column at this index
-            if (iAmRed) // If the current agent is the Red player...
-            {
-                lowestEmptySlot.addRed(); // Place a red token into the empty slot
-            }
-            else // If the current agent is the Yellow player (not the Red player)...
-            {
-                lowestEmptySlot.addYellow(); // Place a yellow token into the empty slot
-            }
-        }
+        myGame.drop(columnNumber, iAmRed);  // lands on top of the column; does nothing if the column is full
     }
 
     /**
@@ -87,15 +245,7 @@ public class MyAgent extends Agent
      */
     public int getLowestEmptyIndex(Connect4Column column) 
     {
-        int lowestEmptySlot = -1;
-        for  (int i = 0; i < column.getRowCount(); i++)
-        {
-            if (!column.getSlot(i).getIsFilled())
-            {
-                lowestEmptySlot = i;
-            }
-        }
-        return lowestEmptySlot;
+        return column.getRowCount() - column.getHeight() - 1;   // -1 once the column is full
     }
 
     /**
@@ -107,7 +257,7 @@ public class MyAgent extends Agent
     public int randomMove()
     {
         int i = r.nextInt(myGame.getColumnCount());
-        while (getLowestEmptyIndex(myGame.getColumn(i)) == -1)
+        while (!myGame.isPlayable(i))
         {
             i = r.nextInt(myGame.getColumnCount());
         }
@@ -118,20 +268,25 @@ public class MyAgent extends Agent
      * compare adjacent slots based on direction and number of slots to check
      * 
      * @param checkColour boolean is the colour?
-     * @param slot1 Connect4Slot - 1st slot to compare for match
-     * @param slot2 Connect4Slot - 2nd slot to compare for match
-     * @param slot3 Connect4Slot - 3rd slot to compare for match
+     * @param slots Connect4Slot[] - the slots to compare for match
      * @return true if all match checkColour otherwise will return false
      */
-    public boolean allThreeMatch(boolean checkColour, Connect4Slot slot1, Connect4Slot slot2, Connect4Slot slot3)
+    public boolean allMatch(boolean checkColour, Connect4Slot[] slots)
     {
-        return(slot1.getIsFilled() && slot2.getIsFilled() && slot3.getIsFilled() && slot1.getIsRed()==checkColour && slot2.getIsRed()==checkColour && slot3.getIsRed()==checkColour);
+        for (Connect4Slot slot : slots)
+        {
+            if (!slot.getIsFilled() || slot.getIsRed() != checkColour)
+            {
+                return false;
+            }
+        }
+        return true;
     }
     
     /**
      * check posilbilites from selected slot to determine if there is a winning combination
      * 
-     * @param checkColour boolean used to pass to allThreeMatch routine at end for comparision
+     * @param checkColour boolean used to pass to allMatch routine at end for comparision
      * @param startCol int column of selected slot
      * @param startRow int row of selected slot
      * @param direction String which direction to check for winning combination
@@ -141,13 +296,14 @@ public class MyAgent extends Agent
     {
         int gridRows = myGame.getRowCount();
         int gridColumns = myGame.getColumnCount();
+        int slotsToCheck = myGame.getWinLength() - 1;//the other slots of a winning line through the selected slot
         boolean isAWinner = false;
         int positionCounter = 0;
-        while(positionCounter < (SLOTS_TO_CHECK + 1) && !isAWinner)//loop for all possible positions either side of the selected slot
+        while(positionCounter < (slotsToCheck + 1) && !isAWinner)//loop for all possible positions either side of the selected slot
         {
             boolean okToCheck = true;
-            int [][] slotPairs={{0,0}, {0,0}, {0,0}};//array for slot positions to be checked
-            int startLocation = -SLOTS_TO_CHECK;
+            int [][] slotPairs = new int[slotsToCheck][2];//array for slot positions to be checked
+            int startLocation = -slotsToCheck;
             while (startLocation < 0 && okToCheck)
             {
                 int offset = startLocation + positionCounter;
@@ -178,8 +334,8 @@ public class MyAgent extends Agent
                 }   
                 if(checkRow >= 0 && checkRow < gridRows && checkColumn >= 0 && checkColumn  < gridColumns)//is slot position within bounds of the board
                 {
-                    slotPairs[startLocation + SLOTS_TO_CHECK][0]= checkColumn;
-                    slotPairs[startLocation + SLOTS_TO_CHECK][1]= checkRow;
+                    slotPairs[startLocation + slotsToCheck][0]= checkColumn;
+                    slotPairs[startLocation + slotsToCheck][1]= checkRow;
                 }
                 else
                 {
@@ -189,7 +345,12 @@ public class MyAgent extends Agent
             }
             if(okToCheck)
             {
-                isAWinner = allThreeMatch(checkColour, myGame.getColumn(slotPairs[0][0]).getSlot(slotPairs[0][1]), myGame.getColumn(slotPairs[1][0]).getSlot(slotPairs[1][1]), myGame.getColumn(slotPairs[2][0]).getSlot(slotPairs[2][1]));
+                Connect4Slot[] slots = new Connect4Slot[slotsToCheck];
+                for (int k = 0; k < slotsToCheck; k++)
+                {
+                    slots[k] = myGame.getColumn(slotPairs[k][0]).getSlot(slotPairs[k][1]);
+                }
+                isAWinner = allMatch(checkColour, slots);
             }
             positionCounter++;
         }
@@ -208,10 +369,9 @@ public class MyAgent extends Agent
     {
         for(int i = 0; i < myGame.getColumnCount(); i++) 
         {
-            Connect4Column column = myGame.getColumn(i);
-            if (!column.getIsFull())//check if column is not yet full
+            if (myGame.isPlayable(i))//check if column is not yet full
             {
-                int nextSlot = getLowestEmptyIndex(column);//get next move on current column
+                int nextSlot = myGame.getRowCount() - myGame.height(i) - 1;//get next move on current column
                 if (nextSlot >= 0)
                 {
                     if(checkForWin(playerRed, i, nextSlot, "Vertical"))//check for winning move on vertical axis 
@@ -238,7 +398,7 @@ public class MyAgent extends Agent
     
     /**
      * Returns the name of this agent.
-     *
+     * 
      * @return the agent's name
      */
     public String getName()
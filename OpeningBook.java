@@ -0,0 +1,211 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A read-only opening book: the best move and score of many early positions, stored in a file
+ * written by OpeningBookBuilder.
+ * 
+ * The file is a small header followed by fixed-size records sorted by position key. It is
+ * memory-mapped rather than read, so opening even a very large book is instant, and lookups
+ * binary-search the mapped file directly without copying anything onto the heap. Files larger
+ * than 1 GB are mapped in several pieces.
+ * 
+ * Your agent MAY use this class to look up its moves in the opening.
+ */
+public class OpeningBook
+{
+    public static final int MAGIC = 0x43344246;    // "C4BF", at the start of every book file
+    public static final int VERSION = 1;
+    public static final int HEADER_BYTES = 32;  // magic, version, columns, rows, depth, record count, padding
+    public static final int RECORD_BYTES = 16;  // key (8), column (2), depth (2), score (4)
+    public static final long YELLOW_TO_MOVE = 0x5DEECE66DL * 0x9E3779B97F4A7C15L;  // mixed into the key when yellow is to move
+
+    private static final int SEGMENT_SHIFT = 26;    // records per mapped segment, as a power of two: 1 GB segments
+
+    private final int columnCount;
+    private final int rowCount;
+    private final int depth;    // the number of plies the book covers
+    private final long recordCount;
+    private final MappedByteBuffer[] segments;
+
+    /**
+     * Opens a book file.
+     * 
+     * @param file the book to open.
+     * @throws IOException if the file cannot be read or is not a book.
+     */
+    public OpeningBook(File file) throws IOException
+    {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel())
+        {
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            header.order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION)
+            {
+                throw new IOException(file + " is not an opening book");
+            }
+            columnCount = header.getInt(8);
+            rowCount = header.getInt(12);
+            depth = header.getInt(16);
+            recordCount = header.getLong(20);
+            if (HEADER_BYTES + recordCount * RECORD_BYTES > channel.size())
+            {
+                throw new IOException(file + " is truncated");
+            }
+            int segmentCount = (int) ((recordCount + (1L << SEGMENT_SHIFT) - 1) >>> SEGMENT_SHIFT);
+            segments = new MappedByteBuffer[segmentCount];
+            for (int i = 0; i < segmentCount; i++)
+            {
+                long first = (long) i << SEGMENT_SHIFT;
+                long count = Math.min(1L << SEGMENT_SHIFT, recordCount - first);
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES + first * RECORD_BYTES, count * RECORD_BYTES);
+                segments[i].order(ByteOrder.LITTLE_ENDIAN);
+            }
+        }
+    }
+
+    /**
+     * Works out the key a position is stored under in a book. It is the position's hash, with
+     * the player to move mixed in, since the same tokens can be reached with either player to move.
+     * 
+     * @param game the position.
+     * @param redToMove true if red is to move.
+     * @return the book key.
+     */
+    public static long key(Connect4Game game, boolean redToMove)
+    {
+        return redToMove ? game.getHash() : game.getHash() ^ YELLOW_TO_MOVE;
+    }
+
+    /**
+     * Looks up the best move in a position.
+     * 
+     * @param game the position.
+     * @param redToMove true if red is to move.
+     * @return the column to play, or -1 if the position is not in the book or the board is a
+     *         different size.
+     */
+    public int findMove(Connect4Game game, boolean redToMove)
+    {
+        if (game.getColumnCount() != columnCount || game.getRowCount() != rowCount)
+        {
+            return -1;
+        }
+        long record = find(key(game, redToMove));
+        return record < 0 ? -1 : getColumn(record);
+    }
+
+    /**
+     * Finds the record for a key.
+     * 
+     * @param key the key to look for.
+     * @return the index of the record, or -1 if there is none.
+     */
+    public long find(long key)
+    {
+        long low = 0, high = recordCount - 1;
+        while (low <= high)
+        {
+            long mid = (low + high) >>> 1;
+            long midKey = getKey(mid);
+            if (midKey < key)
+            {
+                low = mid + 1;
+            }
+            else if (midKey > key)
+            {
+                high = mid - 1;
+            }
+            else
+            {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Reads the key of a record.
+     * 
+     * @param record the index of the record.
+     * @return the key.
+     */
+    public long getKey(long record)
+    {
+        return segment(record).getLong(offset(record));
+    }
+
+    /**
+     * Reads the best column of a record.
+     * 
+     * @param record the index of the record.
+     * @return the column.
+     */
+    public int getColumn(long record)
+    {
+        return segment(record).getShort(offset(record) + 8);
+    }
+
+    /**
+     * Reads how deep the position of a record was searched.
+     * 
+     * @param record the index of the record.
+     * @return the depth in plies.
+     */
+    public int getSearchDepth(long record)
+    {
+        return segment(record).getShort(offset(record) + 10);
+    }
+
+    /**
+     * Reads the score of a record, from the point of view of the player to move, on the
+     * Connect4Search scale.
+     * 
+     * @param record the index of the record.
+     * @return the score.
+     */
+    public int getScore(long record)
+    {
+        return segment(record).getInt(offset(record) + 12);
+    }
+
+    /**
+     * Returns the number of positions in the book.
+     * 
+     * @return the number of records.
+     */
+    public long size()
+    {
+        return recordCount;
+    }
+
+    /**
+     * Returns the number of plies the book covers.
+     * 
+     * @return the depth of the book.
+     */
+    public int getDepth()
+    {
+        return depth;
+    }
+
+    /**
+     * Finds the mapped segment holding a record.
+     */
+    private MappedByteBuffer segment(long record)
+    {
+        return segments[(int) (record >>> SEGMENT_SHIFT)];
+    }
+
+    /**
+     * Works out where a record starts within its segment.
+     */
+    private int offset(long record)
+    {
+        return (int) (record & ((1L << SEGMENT_SHIFT) - 1)) * RECORD_BYTES;
+    }
+}
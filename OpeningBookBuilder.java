@@ -0,0 +1,319 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Builds an opening book file for OpeningBook.
+ * 
+ * The builder finds every distinct position reachable in the first few plies, with either
+ * player moving first, and leaves out positions that are already won. It then searches each
+ * position with Connect4Search, spreading the positions over several threads, sorts the results
+ * by key, and streams them to the file through a fixed-size buffer.
+ * 
+ * Usage: java OpeningBookBuilder columns rows depth nodesPerPosition output [threads]
+ * For example, "java OpeningBookBuilder 7 6 8 2000000 book7x6.bin" books the first 8 plies of a
+ * standard board, searching up to two million nodes for each position.
+ */
+public class OpeningBookBuilder
+{
+    private static final int TABLE_MEGABYTES = 64;  // the transposition table of each thread
+    private static final int WRITE_BUFFER_BYTES = 1 << 20;
+
+    private final int columnCount;
+    private final int rowCount;
+    private final int depth;
+    private final int bitsPerMove;  // the size of one column number in a packed move list
+
+    private long[] keys = new long[1024];   // the book key of each position found
+    private long[] lines = new long[1024];  // the moves leading to each position: see line()
+    private int count;  // the number of positions found
+    private long[] seen = new long[1 << 12];    // an open-addressing set of the keys found so far; 0 marks an empty slot
+
+    /**
+     * Creates a builder for a board size and depth.
+     * 
+     * @param columns the number of columns in the game board.
+     * @param rows the number of rows in the game board.
+     * @param depth the number of plies to cover.
+     */
+    public OpeningBookBuilder(int columns, int rows, int depth)
+    {
+        this.columnCount = columns;
+        this.rowCount = rows;
+        this.depth = depth;
+        this.bitsPerMove = 32 - Integer.numberOfLeadingZeros(columns - 1);
+        if (depth > 127 || depth * bitsPerMove > 56)
+        {
+            throw new IllegalArgumentException("A book of " + depth + " plies is too deep for " + columns + " columns");
+        }
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length < 5)
+        {
+            System.out.println("Usage: java OpeningBookBuilder columns rows depth nodesPerPosition output [threads]");
+            return;
+        }
+        int threads = args.length > 5 ? Integer.parseInt(args[5]) : Runtime.getRuntime().availableProcessors();
+        OpeningBookBuilder builder = new OpeningBookBuilder(Integer.parseInt(args[0]), Integer.parseInt(args[1]),
+            Integer.parseInt(args[2]));
+        long start = System.currentTimeMillis();
+        builder.enumerate();
+        builder.sortByKey();
+        System.out.println("Found " + builder.count + " positions in " + (System.currentTimeMillis() - start) + " ms");
+        builder.build(Long.parseLong(args[3]), threads, new File(args[4]));
+        System.out.println("Wrote " + args[4] + " in " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    /**
+     * Finds every distinct position within the book's depth that is not already won or drawn.
+     */
+    public void enumerate()
+    {
+        for (int first = 0; first < 2; first++)
+        {
+            boolean redFirst = (first == 0);
+            walk(new Connect4Game(columnCount, rowCount), redFirst, redFirst, 0, 0L);
+        }
+    }
+
+    /**
+     * Puts the positions found by enumerate() in key order, which is the order they are
+     * written in. Sorting the keys and move lists in place keeps the builder's memory down to
+     * two longs per position.
+     */
+    public void sortByKey()
+    {
+        quicksort(0, count - 1);
+    }
+
+    /**
+     * Searches every position and writes the book. The positions must have been sorted by
+     * sortByKey().
+     * 
+     * @param nodesPerPosition the node limit of each search.
+     * @param threads the number of threads to search with.
+     * @param output the file to write.
+     * @throws IOException if the file cannot be written.
+     */
+    public void build(final long nodesPerPosition, int threads, File output) throws IOException
+    {
+        final int[] columns = new int[count];
+        final int[] depths = new int[count];
+        final int[] scores = new int[count];
+        final AtomicInteger next = new AtomicInteger();
+        final AtomicInteger done = new AtomicInteger();
+        Thread[] workers = new Thread[Math.max(1, threads)];
+        for (int t = 0; t < workers.length; t++)
+        {
+            workers[t] = new Thread(new Runnable() {
+                    public void run()
+                    {
+                        Connect4Search search = new Connect4Search(new TranspositionTable(TABLE_MEGABYTES));
+                        search.setNodeLimit(nodesPerPosition);
+                        int i;
+                        while ((i = next.getAndIncrement()) < count)
+                        {
+                            Connect4Game game = new Connect4Game(columnCount, rowCount);
+                            boolean redToMove = replay(lines[i], game);
+                            columns[i] = search.search(game, redToMove);
+                            depths[i] = search.getDepth();
+                            scores[i] = search.getScore();
+                            int finished = done.incrementAndGet();
+                            if (finished % 10000 == 0)
+                            {
+                                System.out.println("Searched " + finished + " of " + count + " positions");
+                            }
+                        }
+                    }
+                }, "book builder " + t);
+            workers[t].start();
+        }
+        for (Thread worker : workers)
+        {
+            try
+            {
+                worker.join();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while building the book", e);
+            }
+        }
+
+        try (RandomAccessFile raf = new RandomAccessFile(output, "rw"); FileChannel channel = raf.getChannel())
+        {
+            channel.truncate(0);
+            ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(OpeningBook.MAGIC).putInt(OpeningBook.VERSION).putInt(columnCount).putInt(rowCount)
+                .putInt(depth).putLong(count).putInt(0);
+            for (int i = 0; i < count; i++)
+            {
+                if (buffer.remaining() < OpeningBook.RECORD_BYTES)
+                {
+                    drain(buffer, channel);
+                }
+                buffer.putLong(keys[i]).putShort((short) columns[i]).putShort((short) depths[i]).putInt(scores[i]);
+            }
+            drain(buffer, channel);
+        }
+    }
+
+    /**
+     * Adds a position and everything reachable from it, depth-first.
+     */
+    private void walk(Connect4Game game, boolean redFirst, boolean redToMove, int ply, long moves)
+    {
+        if (!add(OpeningBook.key(game, redToMove), line(redFirst, ply, moves)) || ply == depth)
+        {
+            return; // either too deep, or already found by another move order along with everything after it
+        }
+        for (int c = 0; c < columnCount; c++)
+        {
+            if (game.drop(c, redToMove) >= 0)
+            {
+                if (game.getWinner() == 'N' && !game.boardFull())
+                {
+                    walk(game, redFirst, !redToMove, ply + 1, moves | ((long) c << (ply * bitsPerMove)));
+                }
+                game.undo();
+            }
+        }
+    }
+
+    /**
+     * Records a position if it has not been seen before.
+     * 
+     * @return true if the position was new.
+     */
+    private boolean add(long key, long line)
+    {
+        long stored = (key == 0) ? 1 : key;    // 0 marks an empty slot
+        int mask = seen.length - 1;
+        int slot = (int) (stored ^ (stored >>> 32)) & mask;
+        while (seen[slot] != 0)
+        {
+            if (seen[slot] == stored)
+            {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        seen[slot] = stored;
+        if (count == keys.length)
+        {
+            keys = Arrays.copyOf(keys, count * 2);
+            lines = Arrays.copyOf(lines, count * 2);
+        }
+        keys[count] = key;
+        lines[count] = line;
+        count++;
+        if (count * 2 > seen.length)    // keep the set at most half full
+        {
+            long[] old = seen;
+            seen = new long[old.length * 2];
+            mask = seen.length - 1;
+            for (long k : old)
+            {
+                if (k != 0)
+                {
+                    int s = (int) (k ^ (k >>> 32)) & mask;
+                    while (seen[s] != 0)
+                    {
+                        s = (s + 1) & mask;
+                    }
+                    seen[s] = k;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Packs the moves leading to a position into a long: the player who moved first in the top
+     * bit, the number of moves in the next 7 bits, and the columns played in the rest, first
+     * move lowest.
+     */
+    private static long line(boolean redFirst, int ply, long moves)
+    {
+        return (redFirst ? Long.MIN_VALUE : 0) | ((long) ply << 56) | moves;
+    }
+
+    /**
+     * Replays a packed move list onto an empty game.
+     * 
+     * @return true if red is to move afterwards.
+     */
+    private boolean replay(long line, Connect4Game game)
+    {
+        boolean redToMove = line < 0;
+        int length = (int) (line >>> 56) & 0x7F;
+        int mask = (1 << bitsPerMove) - 1;
+        for (int ply = 0; ply < length; ply++)
+        {
+            game.drop((int) (line >>> (ply * bitsPerMove)) & mask, redToMove);
+            redToMove = !redToMove;
+        }
+        return redToMove;
+    }
+
+    /**
+     * Sorts keys[low..high], and lines along with them, by signed key.
+     */
+    private void quicksort(int low, int high)
+    {
+        while (low < high)
+        {
+            long pivot = keys[(low + high) >>> 1];
+            int i = low, j = high;
+            while (i <= j)
+            {
+                while (keys[i] < pivot)
+                {
+                    i++;
+                }
+                while (keys[j] > pivot)
+                {
+                    j--;
+                }
+                if (i <= j)
+                {
+                    long t = keys[i]; keys[i] = keys[j]; keys[j] = t;
+                    t = lines[i]; lines[i] = lines[j]; lines[j] = t;
+                    i++;
+                    j--;
+                }
+            }
+            if (j - low < high - i) // recurse into the smaller half so the stack stays shallow
+            {
+                quicksort(low, j);
+                low = i;
+            }
+            else
+            {
+                quicksort(i, high);
+                high = j;
+            }
+        }
+    }
+
+    /**
+     * Writes out everything in the buffer and empties it.
+     */
+    private static void drain(ByteBuffer buffer, FileChannel channel) throws IOException
+    {
+        buffer.flip();
+        while (buffer.hasRemaining())
+        {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,230 @@
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A search that uses several threads at once, in the "Lazy SMP" style.
+ * 
+ * Every thread runs its own Connect4Search of the same position, each on a private copy of the
+ * game, and they all share one transposition table. The helpers start at staggered depths, so
+ * between them they fill the table with results the main search can use instead of searching
+ * those subtrees itself. Only the main search's answer is used: when it finishes, the helpers
+ * are told to stop.
+ * 
+ * With one thread this is exactly a Connect4Search run on the calling thread.
+ * 
+ * Your agent MAY use this class to choose its moves.
+ */
+public class ParallelSearch
+{
+    private Connect4Search[] searches;  // searches[0] is the main search; the rest are helpers
+    private ExecutorService helpers;    // runs the helper searches; null with one thread
+    private long elapsedNanos;  // how long the last search took
+
+    /**
+     * Creates a new parallel search.
+     * 
+     * @param table the transposition table shared by every thread.
+     * @param threads the number of threads to search with, including the calling thread.
+     */
+    public ParallelSearch(TranspositionTable table, int threads)
+    {
+        searches = new Connect4Search[Math.max(1, threads)];
+        for (int i = 0; i < searches.length; i++)
+        {
+            searches[i] = new Connect4Search(table);
+            searches[i].setStartDepth(1 + i % 3);   // helpers 1, 2, 3... start at depths 2, 3, 1...
+            searches[i].setHelper(i > 0);
+        }
+        if (searches.length > 1)
+        {
+            helpers = Executors.newFixedThreadPool(searches.length - 1, new ThreadFactory() {
+                    public Thread newThread(Runnable r)
+                    {
+                        Thread thread = new Thread(r, "search helper");
+                        thread.setDaemon(true); // helpers must not keep the program running
+                        return thread;
+                    }
+                });
+        }
+    }
+
+    /**
+     * Sets the most time a search may take.
+     * 
+     * @param millis the time limit in milliseconds, or 0 for no limit.
+     */
+    public void setTimeLimit(long millis)
+    {
+        for (Connect4Search search : searches)
+        {
+            search.setTimeLimit(millis);
+        }
+    }
+
+    /**
+     * Sets the most nodes the main search may visit. Helpers are stopped when the main search
+     * finishes, so their nodes do not count towards the limit.
+     * 
+     * @param nodes the node limit, or 0 for no limit.
+     */
+    public void setNodeLimit(long nodes)
+    {
+        searches[0].setNodeLimit(nodes);
+    }
+
+    /**
+     * Sets the deepest a search may go.
+     * 
+     * @param depth the depth limit in plies, or 0 to search until the board is full.
+     */
+    public void setMaxDepth(int depth)
+    {
+        for (Connect4Search search : searches)
+        {
+            search.setMaxDepth(depth);
+        }
+    }
+
+    /**
+     * Finds the best move in a position. The position must have at least one open column.
+     * 
+     * @param position the game to search; it is copied, not changed.
+     * @param red true if red is to move, false if yellow is to move.
+     * @return the column to play.
+     */
+    public int search(final Connect4Game position, final boolean red)
+    {
+        long start = System.nanoTime();
+        AtomicBoolean stop = new AtomicBoolean();
+        Future<?>[] running = new Future<?>[searches.length];
+        for (int i = 1; i < searches.length; i++)
+        {
+            final Connect4Search helper = searches[i];
+            helper.setStopSignal(stop);
+            running[i] = helpers.submit(new Runnable() {
+                    public void run()
+                    {
+                        helper.search(position, red);
+                    }
+                });
+        }
+        int move = searches[0].search(position, red);
+        stop.set(true); // the main search has its answer, so the helpers can stop
+        for (int i = 1; i < searches.length; i++)
+        {
+            try
+            {
+                running[i].get();
+            }
+            catch (Exception e)
+            {
+                throw new IllegalStateException("A helper search failed", e);
+            }
+        }
+        elapsedNanos = System.nanoTime() - start;
+        return move;
+    }
+
+    /**
+     * Returns the number of threads the search uses.
+     * 
+     * @return the number of threads, including the calling thread.
+     */
+    public int getThreadCount()
+    {
+        return searches.length;
+    }
+
+    /**
+     * Returns the main search, to read its depth and score.
+     * 
+     * @return the search run on the calling thread.
+     */
+    public Connect4Search getMainSearch()
+    {
+        return searches[0];
+    }
+
+    /**
+     * Returns the number of nodes every thread visited in the most recent search.
+     * 
+     * @return the total number of nodes.
+     */
+    public long getNodes()
+    {
+        long nodes = 0;
+        for (Connect4Search search : searches)
+        {
+            nodes += search.getNodes();
+        }
+        return nodes;
+    }
+
+    /**
+     * Returns the number of transposition table lookups every thread made in the most recent
+     * search.
+     * 
+     * @return the total number of lookups.
+     */
+    public long getTableProbes()
+    {
+        long probes = 0;
+        for (Connect4Search search : searches)
+        {
+            probes += search.getTableProbes();
+        }
+        return probes;
+    }
+
+    /**
+     * Returns the number of transposition table lookups that found an entry, over every thread
+     * in the most recent search.
+     * 
+     * @return the total number of hits.
+     */
+    public long getTableHits()
+    {
+        long hits = 0;
+        for (Connect4Search search : searches)
+        {
+            hits += search.getTableHits();
+        }
+        return hits;
+    }
+
+    /**
+     * Returns how fast the most recent search went, counting every thread.
+     * 
+     * @return the total number of nodes visited per second.
+     */
+    public long getNodesPerSecond()
+    {
+        return elapsedNanos > 0 ? getNodes() * 1000000000L / elapsedNanos : 0;
+    }
+
+    /**
+     * Describes the most recent search, for printing.
+     * 
+     * @return the depth and score of the main search, and the nodes and speed of all threads.
+     */
+    public String getReport()
+    {
+        Connect4Search main = searches[0];
+        return "depth " + main.getDepth() + ", score " + main.getScore() + ", " + getNodes() + " nodes in "
+            + (elapsedNanos / 1000000) + " ms on " + searches.length + " threads (" + getNodesPerSecond() + " nodes/s)";
+    }
+
+    /**
+     * Stops the helper threads. The search must not be used afterwards.
+     */
+    public void shutdown()
+    {
+        if (helpers != null)
+        {
+            helpers.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,370 @@
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the agents' moves for a game, keeping the real board out of their reach and keeping time.
+ * 
+ * The real board is a copy of the game the agents were made with, which no agent ever sees.
+ * Each agent is given a private board of its own. Before each move the referee brings the
+ * agent's board up to date with the real one; after the move it checks the move on the agent's
+ * board and, if it is valid, plays the same column on the real board. An agent that changes its
+ * board wrongly, throws an exception or runs out of time cannot damage the real game, even if it
+ * kept the game it was made with.
+ * 
+ * A ColumnAgent is instead shown a read-only view of the real board, and the referee plays the
+ * column it returns if that column is open. Nothing is copied or checked slot by slot, so its
+ * moves cost the referee only a drop(). An agent that runs out of time may go on reading the
+ * view after the game has moved on, but whatever it then returns is thrown away.
+ * 
+ * When the time control has any limit, moves are run on a separate thread, and the referee
+ * waits only until the move's deadline: the smaller of the move limit and the time left on the
+ * agent's clock. A move that is not finished by then loses. Its thread is interrupted and left
+ * behind, and the next timed move gets a new thread, so an agent stuck in a loop cannot hold up
+ * the games after it. Without limits, moves are run on the calling thread, which is faster.
+ * 
+ * Each move is timed into the default MetricsRegistry: the wall time and CPU time of each
+ * agent's move() ("red.name.move" and "red.name.moveCpu.sampled" for a red agent; see
+ * Agent.metricName()), the time to check a move ("validate") and to play it on the real board
+ * and look for a win ("winCheck"), and the number of games finished ("games"). The CPU time is
+ * that of the thread running move(), so it leaves out any helper threads the agent uses. Every
+ * move is counted in the wall times and in the checking and playing times, but reading the CPU
+ * time costs about half a microsecond, so while an agent's moves are quicker than SLOW_NANOS
+ * only one in SAMPLE has its CPU time read. The CPU timer's name says so, as its percentiles
+ * and maximum come from a sample of the quick moves.
+ * 
+ * While a Java Flight Recorder recording is running, each move and each finished game is also
+ * recorded for it (see FlightEvents).
+ * 
+ * Your agent will not need to use this class.
+ */
+public class Referee
+{
+    private static final int SAMPLE = 16;   // one quick move in this many has its CPU time read; a power of two
+    private static final long SLOW_NANOS = 100000;  // a move this long always has its CPU time read, as that costs under 1% of it
+
+    private Connect4Game game;  // the real board, which only the referee changes
+    private Agent[] players;    // [0] the red player, [1] the yellow player
+    private Connect4Game[] boards;  // each player's own copy of the board
+    private TimeControl timeControl;
+    private long[] clocks = new long[2];    // the time left on each player's clock, in milliseconds
+    private Future<?>[] running = new Future<?>[2]; // each player's latest timed move, which may not have stopped
+    private long[] snapshot;    // the player's board before the current move, for validation
+    private long lastMoveNanos; // how long the most recent move took
+    private long[] moveNanos = new long[2]; // how long each player's most recent move took
+    private ExecutorService executor;   // runs timed moves; null until one is needed
+    private MetricsRegistry metrics = MetricsRegistry.getDefault();
+    private LatencyHistogram[] moveTimers, cpuTimers;   // each player's move times, wall and CPU
+    private LatencyHistogram validateTimer, winCheckTimer;
+    private AtomicLong gamesCounter;    // the number of games finished, counted as the last move is made
+    private long moveCpuNanos;  // the CPU time of the most recent move; written by the move thread for timed moves
+    private int chosenColumn;   // the column a ColumnAgent chose in the most recent move; -1 for other agents
+    private int moveCount;  // the number of moves made, for picking which have their CPU time read
+    private boolean cpuTimed;   // whether the current move's CPU time is being read
+    private long gameStart; // when the current game started, for its Flight Recorder event
+
+    /**
+     * Sets up a referee for two agents, and gives each of them its own board.
+     * 
+     * @param game the game the agents were made with; only its size and win length are used.
+     * @param redPlayer the agent playing as the red tokens.
+     * @param yellowPlayer the agent playing as the yellow tokens.
+     * @param timeControl how long the agents may think.
+     */
+    public Referee(Connect4Game game, Agent redPlayer, Agent yellowPlayer, TimeControl timeControl)
+    {
+        this.game = new Connect4Game(game);
+        this.players = new Agent[] { redPlayer, yellowPlayer };
+        this.boards = new Connect4Game[] { new Connect4Game(game), new Connect4Game(game) };
+        this.timeControl = timeControl;
+        redPlayer.setGame(boards[0]);
+        yellowPlayer.setGame(boards[1]);
+        moveTimers = new LatencyHistogram[] { metrics.timer(redPlayer.metricName("move")),
+            metrics.timer(yellowPlayer.metricName("move")) };
+        cpuTimers = new LatencyHistogram[] { metrics.timer(redPlayer.metricName("moveCpu.sampled")),
+            metrics.timer(yellowPlayer.metricName("moveCpu.sampled")) };
+        validateTimer = metrics.timer("validate");
+        winCheckTimer = metrics.timer("winCheck");
+        gamesCounter = metrics.counter("games");
+        newGame();
+    }
+
+    /**
+     * Sets both clocks back to the start. Call this when a new game starts.
+     */
+    public void newGame()
+    {
+        clocks[0] = timeControl.getGameMillis();
+        clocks[1] = timeControl.getGameMillis();
+        gameStart = System.nanoTime();
+    }
+
+    /**
+     * Has one player make a move, and plays it on the real board if it is valid.
+     * 
+     * @param red true for the red player, false for the yellow player.
+     * @return an empty string if the move was made, or why the player loses the game: an
+     *         invalid move, an exception, or running out of time.
+     */
+    public String move(boolean red)
+    {
+        int side = red ? 0 : 1;
+        Agent player = players[side];
+        if (running[side] != null && !running[side].isDone())
+        {
+            return finish(side, player.toString() + " is still busy with a move it ran out of time on.");
+        }
+        boolean chooser = player instanceof ColumnAgent;
+        Connect4Game board = boards[side];
+        if (!chooser)
+        {
+            board.copyFrom(game);
+            snapshot = board.snapshot(snapshot);    // store the old board for validation
+        }
+        long limit = moveLimit(side);
+        cpuTimed = ((++moveCount & (SAMPLE - 1)) == 0 || moveNanos[side] >= SLOW_NANOS) && metrics.isCpuTiming();
+        player.startClock(limit, timeControl.getGameMillis() > 0 ? clocks[side] : Agent.NO_LIMIT);
+        Object moveEvent = FlightEvents.MOVE.begin();
+        long start = System.nanoTime();
+        String error = limit == Agent.NO_LIMIT ? runHere(player) : runTimed(side, limit);
+        lastMoveNanos = System.nanoTime() - start;
+        moveNanos[side] = lastMoveNanos;
+        moveTimers[side].record(lastMoveNanos);
+        if (moveEvent != null)
+        {
+            int column = chooser ? chosenColumn
+                : board.getTokenCount() == game.getTokenCount() + 1 ? board.getLastColumn() : -1;
+            FlightEvents.MOVE.commit(moveEvent, player.getName(), red, column, error);
+        }
+        if (error.length() > 0)
+        {
+            return finish(side, error);
+        }
+        if (cpuTimed)
+        {
+            cpuTimers[side].record(moveCpuNanos);
+        }
+        if (timeControl.getGameMillis() > 0)
+        {
+            clocks[side] = Math.max(0, clocks[side] - lastMoveNanos / 1000000) + timeControl.getIncrementMillis();
+        }
+        long validateStart = System.nanoTime();
+        String validateResult = chooser ? checkColumn(chosenColumn) : board.validateMove(snapshot);
+        if (validateResult.length() > 0)
+        {
+            return finish(side, player.toString() + ": " + validateResult);
+        }
+        long dropStart = System.nanoTime();
+        game.drop(chooser ? chosenColumn : board.getLastColumn(), red);
+        validateTimer.record(dropStart - validateStart);
+        winCheckTimer.record(System.nanoTime() - dropStart);
+        if (game.getWinner() != 'N' || game.boardFull())
+        {
+            return finish(side, "");
+        }
+        return "";
+    }
+
+    /**
+     * Returns the real board. Only the referee may change it, but the caller may clear it and
+     * set who moves first before a new game.
+     * 
+     * @return the real board.
+     */
+    public Connect4Game getGame()
+    {
+        return game;
+    }
+
+    /**
+     * Returns how long the most recent move took, including any time spent waiting for it.
+     * 
+     * @return the time in nanoseconds.
+     */
+    public long getLastMoveNanos()
+    {
+        return lastMoveNanos;
+    }
+
+    /**
+     * Returns the time left on a player's clock.
+     * 
+     * @param red true for the red player, false for the yellow player.
+     * @return the time in milliseconds, or Agent.NO_LIMIT if the game is not timed.
+     */
+    public long getClockLeft(boolean red)
+    {
+        return timeControl.getGameMillis() > 0 ? clocks[red ? 0 : 1] : Agent.NO_LIMIT;
+    }
+
+    /**
+     * Returns how long the agents may think.
+     * 
+     * @return the time control.
+     */
+    public TimeControl getTimeControl()
+    {
+        return timeControl;
+    }
+
+    /**
+     * Stops the thread timed moves are run on, interrupting any move still running.
+     */
+    public void shutdown()
+    {
+        if (executor != null)
+        {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    /**
+     * Counts a finished game, and records it for Flight Recorder.
+     * 
+     * @return the reason the player lost by forfeit, or an empty string if the game ended on
+     *         the board.
+     */
+    private String finish(int side, String forfeit)
+    {
+        gamesCounter.incrementAndGet();
+        Object gameEvent = FlightEvents.GAME.begin();
+        if (gameEvent != null)
+        {
+            String winner = game.getWinner() == 'R' ? "Red" : game.getWinner() == 'Y' ? "Yellow" : "Draw";
+            if (forfeit.length() > 0)
+            {
+                winner = side == 0 ? "Yellow" : "Red";
+            }
+            FlightEvents.GAME.commit(gameEvent, players[0].getName(), players[1].getName(), winner,
+                game.getTokenCount(), System.nanoTime() - gameStart, forfeit);
+        }
+        return forfeit;
+    }
+
+    /**
+     * Works out how long a player's next move may take: the move limit, or the time left on
+     * the player's clock if that is less.
+     */
+    private long moveLimit(int side)
+    {
+        long limit = Agent.NO_LIMIT;
+        if (timeControl.getMoveMillis() > 0)
+        {
+            limit = timeControl.getMoveMillis();
+        }
+        if (timeControl.getGameMillis() > 0)
+        {
+            limit = Math.min(limit, clocks[side]);
+        }
+        return limit;
+    }
+
+    /**
+     * Checks that a ColumnAgent's column can be played on the real board.
+     */
+    private String checkColumn(int column)
+    {
+        if (game.isPlayable(column))
+        {
+            return "";
+        }
+        if (column < 0 || column >= game.getColumnCount())
+        {
+            return "Invalid move: there is no column " + column + ".";
+        }
+        return "Invalid move: column " + column + " is full.";
+    }
+
+    /**
+     * Runs a player's move on whichever thread this is called on: chooseColumn() on the view
+     * of the real board for a ColumnAgent, or move() on its own board for any other agent.
+     * 
+     * @return the column a ColumnAgent chose, or -1 for any other agent.
+     */
+    private int think(Agent player)
+    {
+        long cpuStart = cpuTimed ? metrics.cpuTime() : 0;
+        int column = -1;
+        if (player instanceof ColumnAgent)
+        {
+            column = ((ColumnAgent) player).chooseColumn(game.view());
+        }
+        else
+        {
+            player.move();
+        }
+        moveCpuNanos = cpuTimed ? metrics.cpuTime() - cpuStart : 0;    // seen by the referee once the move is done
+        return column;
+    }
+
+    /**
+     * Runs an untimed move on this thread.
+     */
+    private String runHere(Agent player)
+    {
+        try
+        {
+            chosenColumn = think(player);
+            return "";
+        }
+        catch (RuntimeException e)
+        {
+            return player.toString() + " failed: " + e;
+        }
+    }
+
+    /**
+     * Runs a move on the move thread, and waits for it until its deadline.
+     */
+    private String runTimed(int side, long limit)
+    {
+        final Agent player = players[side];
+        if (executor == null)
+        {
+            executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                    public Thread newThread(Runnable task)
+                    {
+                        Thread thread = new Thread(task, "Agent moves");
+                        thread.setDaemon(true); // a move that never finishes must not keep the program running
+                        return thread;
+                    }
+                });
+        }
+        Future<Integer> move = executor.submit(new Callable<Integer>() {
+                public Integer call()
+                {
+                    return think(player);
+                }
+            });
+        running[side] = move;
+        try
+        {
+            chosenColumn = move.get(limit, TimeUnit.MILLISECONDS);
+            return "";
+        }
+        catch (TimeoutException e)
+        {
+            move.cancel(true);
+            executor.shutdownNow(); // the thread may never come back, so the next move gets a new one
+            executor = null;
+            return player.toString() + " ran out of time: the move took more than " + limit + " ms.";
+        }
+        catch (ExecutionException e)
+        {
+            return player.toString() + " failed: " + e.getCause();
+        }
+        catch (InterruptedException e)
+        {
+            move.cancel(true);
+            Thread.currentThread().interrupt();
+            return player.toString() + "'s move was stopped.";
+        }
+    }
+}
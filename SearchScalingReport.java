@@ -0,0 +1,86 @@
+import java.util.Random;
+
+/**
+ * Measures how the parallel search scales with the number of threads, and prints a table of
+ * the results.
+ * 
+ * Each thread count searches the same set of positions with the same time limit and a fresh
+ * transposition table. The table shows the total nodes per second over all threads, the speed-up
+ * over one thread, and the average depth the main search finished.
+ * 
+ * Usage: java SearchScalingReport [columns rows millisPerPosition positions threadCounts...]
+ * The defaults are a 7x6 board, 1000 ms for each of 8 positions, and 1, 2, 4, 8 and 16 threads.
+ */
+public class SearchScalingReport
+{
+    private static final int TABLE_MEGABYTES = 256;
+
+    public static void main(String[] args)
+    {
+        int columns = args.length > 0 ? Integer.parseInt(args[0]) : 7;
+        int rows = args.length > 1 ? Integer.parseInt(args[1]) : 6;
+        long millis = args.length > 2 ? Long.parseLong(args[2]) : 1000;
+        int positions = args.length > 3 ? Integer.parseInt(args[3]) : 8;
+        int[] threadCounts = {1, 2, 4, 8, 16};
+        if (args.length > 4)
+        {
+            threadCounts = new int[args.length - 4];
+            for (int i = 4; i < args.length; i++)
+            {
+                threadCounts[i - 4] = Integer.parseInt(args[i]);
+            }
+        }
+
+        Connect4Game[] games = new Connect4Game[positions];
+        boolean[] redToMove = new boolean[positions];
+        Random random = new Random(42);
+        for (int p = 0; p < positions; p++) // short random openings, so the searches do not all start from the same tree
+        {
+            games[p] = new Connect4Game(columns, rows);
+            boolean red = true;
+            for (int ply = 0; ply < p % 6; ply++)
+            {
+                int column = random.nextInt(columns);
+                if (games[p].drop(column, red) >= 0)
+                {
+                    if (games[p].getWinner() != 'N')
+                    {
+                        games[p].undo();
+                    }
+                    else
+                    {
+                        red = !red;
+                    }
+                }
+            }
+            redToMove[p] = red;
+        }
+
+        System.out.println("Board " + columns + "x" + rows + ", " + positions + " positions, " + millis + " ms each, "
+            + Runtime.getRuntime().availableProcessors() + " processors available");
+        System.out.println("threads     nodes/s   speed-up   avg depth");
+        long baseline = 0;
+        for (int threads : threadCounts)
+        {
+            ParallelSearch search = new ParallelSearch(new TranspositionTable(TABLE_MEGABYTES), threads);
+            search.setTimeLimit(millis);
+            long nodes = 0, nanos = 0, depths = 0;
+            for (int p = 0; p < positions; p++)
+            {
+                long start = System.nanoTime();
+                search.search(games[p], redToMove[p]);
+                nanos += System.nanoTime() - start;
+                nodes += search.getNodes();
+                depths += search.getMainSearch().getDepth();
+            }
+            search.shutdown();
+            long nodesPerSecond = nodes * 1000000000L / Math.max(1, nanos);
+            if (baseline == 0)
+            {
+                baseline = nodesPerSecond;
+            }
+            System.out.println(String.format("%7d %11d %9.2fx %11.1f", threads, nodesPerSecond,
+                (double) nodesPerSecond / baseline, (double) depths / positions));
+        }
+    }
+}
@@ -0,0 +1,471 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.reflect.Constructor;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Plays agents against each other on every processor and writes positions from the games to a
+ * file, each labelled with how the game ended, for tuning evaluations offline.
+ * 
+ * Each game is played on its own board by a fresh pair of agents, as in Tournament. Afterwards
+ * some of its positions are picked at random, labelled, and added to a batch. Full batches are
+ * handed to a single writer thread, which writes each with one call, so the players never wait
+ * for the disk. A position already written, by any thread, is skipped; positions are
+ * remembered in a Bloom filter of fixed size, which now and then skips a position that is new.
+ * Games lost by breaking the rules are not used.
+ * 
+ * The file is a 32-byte header (magic, version, columns, rows, record size, the number of
+ * records as a long at offset 20, and the win length, all little-endian) followed by records of
+ * fixed size:
+ * <ul>
+ * <li>the board: for each column in turn, rows + 1 bits counting up from the bottom, with a 1
+ *     for each red token and a 1 just above the top token, so the column's height can be found;
+ *     packed into as many longs as needed (one on a standard board)</li>
+ * <li>a byte of flags: 1 if red is to move, 2 if the position was searched, 4 if it was solved</li>
+ * <li>a byte with the result for the player to move: 1 for a win, 0 for a draw, -1 for a loss</li>
+ * <li>a short with the number of moves left in the game</li>
+ * <li>an int with the search or solver score for the player to move, or 0</li>
+ * </ul>
+ * Records are 16 bytes on a standard board.
+ * 
+ * Usage: java SelfPlay agentA agentB games output [columns rows threads samples depth solveSlots filterMB winLength]
+ * The defaults are a 7x6 board, a thread for each processor, 8 positions from each game (0 for
+ * every position), no search (otherwise the depth to search each position to), no solving
+ * (otherwise positions with at most this many empty slots are solved exactly), a 64 MB filter,
+ * and four in a row to win.
+ * 
+ * Your agent will not need to use this class.
+ */
+public class SelfPlay
+{
+    public static final int MAGIC = 0x43345350;    // "C4SP", at the start of every file
+    public static final int VERSION = 2;
+    public static final int HEADER_BYTES = 32;
+    public static final int RED_TO_MOVE = 1, SEARCHED = 2, SOLVED = 4;  // the flags of a record
+
+    private static final int BATCH_BYTES = 1 << 16; // the size of a batch of records
+
+    private List<Constructor<? extends Agent>> agents;  // how to make each of the two agents
+    private int columnCount;
+    private int rowCount;
+    private int winLength = Connect4Game.DEFAULT_WIN_LENGTH;
+    private int samples;    // the positions to take from each game; 0 for all of them
+    private int searchDepth;    // how deep to search each position; 0 not to search
+    private int solveSlots; // solve positions with at most this many empty slots; 0 not to solve
+    private int words;  // the longs holding the board of one record
+    private int recordBytes;
+    private PositionFilter filter;
+
+    private BlockingQueue<ByteBuffer> full; // batches waiting to be written
+    private BlockingQueue<ByteBuffer> free; // empty batches, ready to be filled again
+    private AtomicInteger nextGame = new AtomicInteger();
+    private AtomicLong written = new AtomicLong();  // the records written so far
+    private AtomicLong duplicates = new AtomicLong();   // the positions skipped because they had been seen
+    private AtomicLong forfeits = new AtomicLong(); // the games not used because a player broke the rules
+
+    public static void main(String[] args) throws Exception
+    {
+        if (args.length < 4)
+        {
+            System.out.println("Usage: java SelfPlay agentA agentB games output "
+                + "[columns rows threads samples depth solveSlots filterMB winLength]");
+            return;
+        }
+        int games = Integer.parseInt(args[2]);
+        int columns = args.length > 4 ? Integer.parseInt(args[4]) : 7;
+        int rows = args.length > 5 ? Integer.parseInt(args[5]) : 6;
+        int threads = args.length > 6 ? Integer.parseInt(args[6]) : Runtime.getRuntime().availableProcessors();
+        int samples = args.length > 7 ? Integer.parseInt(args[7]) : 8;
+        int depth = args.length > 8 ? Integer.parseInt(args[8]) : 0;
+        int solveSlots = args.length > 9 ? Integer.parseInt(args[9]) : 0;
+        int filterMB = args.length > 10 ? Integer.parseInt(args[10]) : 64;
+
+        SelfPlay selfPlay = new SelfPlay(args[0], args[1], columns, rows, samples, depth, solveSlots, filterMB);
+        if (args.length > 11)
+        {
+            selfPlay.setWinLength(Integer.parseInt(args[11]));
+        }
+        MetricsRegistry.getDefault().setCpuTiming(false);    // random moves take less time than reading the CPU clock
+        PrintStream out = Tournament.silenceOutput();
+        long start = System.nanoTime();
+        try
+        {
+            selfPlay.play(games, threads, new File(args[3]));
+        }
+        finally
+        {
+            System.setOut(out);
+        }
+        long elapsed = System.nanoTime() - start;
+        out.println(String.format("%d games, %d positions written, %d duplicates skipped, %d forfeited games",
+            games, selfPlay.written.get(), selfPlay.duplicates.get(), selfPlay.forfeits.get()));
+        out.println(String.format("%.0f positions/s, %.1f games/s", selfPlay.written.get() * 1e9 / elapsed,
+            games * 1e9 / elapsed));
+    }
+
+    /**
+     * Sets up self-play between two agents.
+     * 
+     * @param agentA the class name of the first agent.
+     * @param agentB the class name of the second agent, which may be the same as the first.
+     * @param columns the number of columns in the game board.
+     * @param rows the number of rows in the game board.
+     * @param samples the number of positions to take from each game, or 0 for all of them.
+     * @param depth how deep to search each position for its score, or 0 not to search.
+     * @param solveSlots solve positions with at most this many empty slots, or 0 not to solve.
+     * @param filterMB the size of the filter of positions already seen, in megabytes.
+     * @throws ReflectiveOperationException if either agent cannot be found or has no
+     *         (Connect4Game, boolean) constructor.
+     */
+    public SelfPlay(String agentA, String agentB, int columns, int rows, int samples, int depth, int solveSlots,
+        int filterMB) throws ReflectiveOperationException
+    {
+        agents = Arrays.asList(Tournament.findAgent(agentA), Tournament.findAgent(agentB));
+        columnCount = columns;
+        rowCount = rows;
+        this.samples = samples;
+        this.searchDepth = depth;
+        this.solveSlots = solveSlots;
+        words = (columns * (rows + 1) + 63) >>> 6;
+        recordBytes = words * 8 + 8;
+        filter = new PositionFilter(filterMB);
+    }
+
+    /**
+     * Sets the number of tokens in a row needed to win. The default is four.
+     * 
+     * @param winLength the win length.
+     */
+    public void setWinLength(int winLength)
+    {
+        this.winLength = winLength;
+    }
+
+    /**
+     * Plays the games and writes their positions to a file, replacing anything in it.
+     * 
+     * @param games the number of games to play.
+     * @param threads the number of games to play at once.
+     * @param output the file to write.
+     * @throws Exception if a game could not be set up, a thread was interrupted, or the file
+     *         could not be written.
+     */
+    public void play(final int games, int threads, File output) throws Exception
+    {
+        threads = Math.max(1, threads);
+        full = new ArrayBlockingQueue<ByteBuffer>(threads * 4);
+        free = new ArrayBlockingQueue<ByteBuffer>(threads * 4);
+        for (int i = 0; i < threads * 4; i++)
+        {
+            free.add(newBatch());
+        }
+        final List<Throwable> failures = new ArrayList<Throwable>();
+        List<Thread> players = new ArrayList<Thread>();
+        for (int t = 0; t < threads; t++)
+        {
+            Thread player = new Thread(new Runnable() {
+                    public void run()
+                    {
+                        try
+                        {
+                            playGames(games);
+                        }
+                        catch (Throwable e)
+                        {
+                            synchronized (failures)
+                            {
+                                failures.add(e);
+                            }
+                            nextGame.set(games);    // stop the other players too
+                        }
+                    }
+                }, "SelfPlay-" + t);
+            player.setDaemon(true);
+            player.start();
+            players.add(player);
+        }
+
+        boolean done = false;
+        try (FileChannel channel = FileChannel.open(output.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(columnCount).putInt(rowCount).putInt(recordBytes);
+            header.putLong(0).putInt(winLength);    // the count is filled in at the end
+            header.flip();
+            writeFully(channel, header);
+            int finished = 0;
+            while (finished < threads)
+            {
+                ByteBuffer batch = full.take();
+                if (batch.limit() == 0) // a player has finished
+                {
+                    finished++;
+                }
+                else
+                {
+                    written.addAndGet(batch.remaining() / recordBytes);
+                    writeFully(channel, batch);
+                }
+                batch.clear();
+                free.put(batch);
+            }
+            header.clear();
+            header.putLong(written.get());
+            header.flip();
+            channel.write(header, 20);
+            done = true;
+        }
+        finally
+        {
+            if (!done)  // the players would wait for the writer forever
+            {
+                nextGame.set(games);
+                for (Thread player : players)
+                {
+                    player.interrupt();
+                }
+            }
+        }
+        for (Thread player : players)
+        {
+            player.join();
+        }
+        if (!failures.isEmpty())
+        {
+            throw new IOException("Self-play failed", failures.get(0));
+        }
+    }
+
+    /**
+     * Plays games until there are none left, then hands over the last batch and an empty one
+     * to say this player has finished.
+     */
+    private void playGames(int games) throws Exception
+    {
+        ByteBuffer batch = free.take();
+        try
+        {
+            Random random = new Random();
+            Connect4Game replay = new Connect4Game(columnCount, rowCount, winLength);
+            long[] board = new long[words];
+            Connect4Search search = null;
+            Connect4Solver solver = null;
+            if (searchDepth > 0)
+            {
+                search = new Connect4Search(new TranspositionTable(16));
+                search.setMaxDepth(searchDepth);
+            }
+            if (solveSlots > 0)
+            {
+                solver = new Connect4Solver(new TranspositionTable(16));
+            }
+            int index;
+            while ((index = nextGame.getAndIncrement()) < games)
+            {
+                Connect4Game game = new Connect4Game(columnCount, rowCount, winLength);
+                boolean aIsRed = (index % 2 == 0);
+                Agent red = agents.get(aIsRed ? 0 : 1).newInstance(game, true);
+                Agent yellow = agents.get(aIsRed ? 1 : 0).newInstance(game, false);
+                Connect4Match match = new Connect4Match(game, red, yellow);
+                char result;
+                try
+                {
+                    result = match.play(index / 2 % 2 == 0);
+                }
+                finally
+                {
+                    red.close();
+                    yellow.close();
+                }
+                if (match.getError() != null)
+                {
+                    forfeits.incrementAndGet();
+                    continue;
+                }
+                GameRecord record = match.getRecord(result);
+                int moves = record.getMoveCount();
+                replay.clearBoard();
+                boolean redToMove = record.getRedPlayedFirst();
+                for (int ply = 0; ply < moves; ply++)
+                {
+                    if (samples == 0 || random.nextInt(moves) < samples)
+                    {
+                        if (!filter.add(OpeningBook.key(replay, redToMove)))
+                        {
+                            duplicates.incrementAndGet();
+                        }
+                        else
+                        {
+                            if (batch.remaining() < recordBytes)
+                            {
+                                batch.flip();
+                                full.put(batch);
+                                batch = free.take();
+                            }
+                            writeRecord(batch, replay, board, redToMove, result, moves - ply, search, solver);
+                        }
+                    }
+                    replay.drop(record.getMove(ply), redToMove);
+                    redToMove = !redToMove;
+                }
+            }
+        }
+        finally
+        {
+            batch.flip();
+            full.put(batch);
+            ByteBuffer done = free.take();
+            done.limit(0);
+            full.put(done);
+        }
+    }
+
+    /**
+     * Labels a position and adds its record to a batch.
+     */
+    private void writeRecord(ByteBuffer batch, Connect4Game position, long[] board, boolean redToMove, char result,
+        int movesLeft, Connect4Search search, Connect4Solver solver)
+    {
+        encode(position, board);
+        for (long word : board)
+        {
+            batch.putLong(word);
+        }
+        int flags = redToMove ? RED_TO_MOVE : 0;
+        int score = 0;
+        int empty = columnCount * rowCount - position.getTokenCount();
+        if (solver != null && empty <= solveSlots)
+        {
+            score = solver.solve(position, redToMove);
+            flags |= SOLVED;
+        }
+        else if (search != null)
+        {
+            search.search(position, redToMove);
+            score = search.getScore();
+            flags |= SEARCHED;
+        }
+        batch.put((byte) flags);
+        batch.put((byte) (result == 'N' ? 0 : (result == 'R') == redToMove ? 1 : -1));
+        batch.putShort((short) Math.min(movesLeft, Short.MAX_VALUE));
+        batch.putInt(score);
+    }
+
+    /**
+     * Packs a board into longs: for each column, rows + 1 bits from the bottom up, with the red
+     * tokens set and a sentinel just above the top token.
+     */
+    private void encode(Connect4Game position, long[] board)
+    {
+        Arrays.fill(board, 0);
+        int bit = 0;
+        for (int column = 0; column < columnCount; column++)
+        {
+            for (int fromBottom = 0; fromBottom < rowCount; fromBottom += 64)
+            {
+                putBits(board, bit + fromBottom, position.columnBits(column, fromBottom, true),
+                    Math.min(64, rowCount - fromBottom));
+            }
+            int top = bit + position.height(column);
+            board[top >>> 6] |= 1L << top;
+            bit += rowCount + 1;
+        }
+    }
+
+    /**
+     * Ors up to 64 bits into a packed array, starting at any bit.
+     */
+    private static void putBits(long[] words, int at, long value, int count)
+    {
+        int offset = at & 63;
+        words[at >>> 6] |= value << offset;
+        if (offset + count > 64)
+        {
+            words[(at >>> 6) + 1] |= value >>> (64 - offset);
+        }
+    }
+
+    /**
+     * Makes an empty batch, laid out for the file.
+     */
+    private ByteBuffer newBatch()
+    {
+        int records = Math.max(1, BATCH_BYTES / recordBytes);
+        return ByteBuffer.allocateDirect(records * recordBytes).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Writes the whole of a buffer to a file.
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer data) throws IOException
+    {
+        while (data.hasRemaining())
+        {
+            channel.write(data);
+        }
+    }
+
+    /**
+     * A Bloom filter of position keys, shared by every thread without locking. A key is
+     * marked by setting three bits picked from it; a key whose bits are all set has probably
+     * been seen before. Since positions are keyed by Zobrist hashes, which are already random,
+     * the bits are taken straight from the key.
+     */
+    private static final class PositionFilter
+    {
+        private static final int PROBES = 3;
+
+        private final AtomicLongArray bits;
+        private final long mask;    // the bit numbers are taken modulo the filter size, a power of two
+
+        PositionFilter(int megabytes)
+        {
+            long size = Long.highestOneBit(Math.max(1L, megabytes) << 23);  // in bits
+            size = Math.min(size, 1L << 36);    // 2^30 longs, within the largest array
+            bits = new AtomicLongArray((int) (size >>> 6));
+            mask = size - 1;
+        }
+
+        /**
+         * Marks a key as seen.
+         * 
+         * @return true if the key had not been seen before, as far as the filter can tell.
+         */
+        boolean add(long key)
+        {
+            long step = (key >>> 32) | 1;   // odd, so the probes are all different
+            boolean fresh = false;
+            for (int i = 0; i < PROBES; i++)
+            {
+                long bit = (key + i * step) & mask;
+                int word = (int) (bit >>> 6);
+                long flag = 1L << bit;
+                long old = bits.get(word);
+                while ((old & flag) == 0)
+                {
+                    if (bits.compareAndSet(word, old, old | flag))
+                    {
+                        fresh = true;
+                        break;
+                    }
+                    old = bits.get(word);
+                }
+            }
+            return fresh;
+        }
+    }
+}
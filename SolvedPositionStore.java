@@ -0,0 +1,287 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A file of positions whose exact values are known, kept so they never have to be solved twice.
+ * 
+ * The file is append-only: each solved position adds one fixed-size record to the end, written
+ * at once, and nothing is ever rewritten. Opening the file reads every record back into an
+ * in-memory hash table, so a store carries over from one run to the next. If a run is killed
+ * in the middle of writing a record, the partial record is dropped the next time the file is
+ * opened.
+ * 
+ * The store can be shared by several threads.
+ * 
+ * Your agent will not need to use this class directly; see Connect4Solver.
+ */
+public class SolvedPositionStore
+{
+    public static final int MAGIC = 0x43345353;    // "C4SS", at the start of every store file
+    public static final int VERSION = 1;
+    public static final int HEADER_BYTES = 16;  // magic, version, columns, rows
+    public static final int RECORD_BYTES = 16;  // key (8), value (4), column (4)
+    public static final long NOT_FOUND = Long.MIN_VALUE;    // returned by lookup() for a position not stored
+
+    private final int columnCount;
+    private final int rowCount;
+    private final FileChannel channel;  // open for appending
+    private final ByteBuffer record;    // reused to write each record
+
+    private long[] keys = new long[1 << 10];    // an open-addressing hash table of the positions stored
+    private int[] values = new int[1 << 10];    // the value of each position, as returned by Connect4Solver
+    private int[] columns = new int[1 << 10];   // the best column of each position
+    private boolean[] used = new boolean[1 << 10];  // which slots of the table hold a position
+    private int count;  // the number of positions stored
+
+    /**
+     * Opens a store, creating the file if it does not exist.
+     * 
+     * @param file the file to keep the store in.
+     * @param columns the number of columns in the game board.
+     * @param rows the number of rows in the game board.
+     * @throws IOException if the file cannot be read or written, or is a store for a different
+     *         board size.
+     */
+    public SolvedPositionStore(File file, int columns, int rows) throws IOException
+    {
+        this.columnCount = columns;
+        this.rowCount = rows;
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+        record = ByteBuffer.allocate(RECORD_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        try
+        {
+            load(file);
+        }
+        catch (IOException e)
+        {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Looks up a position, reading its value and best column together so that a put() on
+     * another thread cannot move the entry in between.
+     * 
+     * @param key the position's key, from OpeningBook.key().
+     * @return the entry, to pass to valueOf() and columnOf(), or NOT_FOUND if the position is
+     *         not in the store.
+     */
+    public synchronized long lookup(long key)
+    {
+        int slot = find(key);
+        if (slot < 0)
+        {
+            return NOT_FOUND;
+        }
+        return ((long) values[slot] << 32) | (columns[slot] & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Reads the value out of an entry returned by lookup().
+     * 
+     * @param entry the entry.
+     * @return the value, as returned by Connect4Solver.solve().
+     */
+    public static int valueOf(long entry)
+    {
+        return (int) (entry >> 32);
+    }
+
+    /**
+     * Reads the best column out of an entry returned by lookup().
+     * 
+     * @param entry the entry.
+     * @return the column.
+     */
+    public static int columnOf(long entry)
+    {
+        return (int) entry;
+    }
+
+    /**
+     * Adds a solved position, writing it to the end of the file. A position that is already
+     * in the store is left alone.
+     * 
+     * @param key the position's key, from OpeningBook.key().
+     * @param value its value, as returned by Connect4Solver.solve().
+     * @param column its best column.
+     * @throws IOException if the record cannot be written.
+     */
+    public synchronized void put(long key, int value, int column) throws IOException
+    {
+        if (find(key) >= 0)
+        {
+            return;
+        }
+        record.clear();
+        record.putLong(key).putInt(value).putInt(column).flip();
+        long position = channel.size();
+        while (record.hasRemaining())
+        {
+            position += channel.write(record, position);
+        }
+        insert(key, value, column);
+    }
+
+    /**
+     * Returns the number of positions in the store.
+     * 
+     * @return the number of positions.
+     */
+    public synchronized int size()
+    {
+        return count;
+    }
+
+    /**
+     * Returns the number of columns of the board the store is for.
+     * 
+     * @return the number of columns.
+     */
+    public int getColumnCount()
+    {
+        return columnCount;
+    }
+
+    /**
+     * Returns the number of rows of the board the store is for.
+     * 
+     * @return the number of rows.
+     */
+    public int getRowCount()
+    {
+        return rowCount;
+    }
+
+    /**
+     * Closes the file. The store must not be used afterwards.
+     * 
+     * @throws IOException if the file cannot be closed.
+     */
+    public synchronized void close() throws IOException
+    {
+        channel.close();
+    }
+
+    /**
+     * Checks the header, writing one if the file is new, and reads every whole record.
+     */
+    private void load(File file) throws IOException
+    {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        if (channel.size() < HEADER_BYTES)
+        {
+            header.putInt(MAGIC).putInt(VERSION).putInt(columnCount).putInt(rowCount).flip();
+            channel.truncate(0);
+            channel.write(header, 0);
+            return;
+        }
+        channel.read(header, 0);
+        header.flip();
+        if (header.getInt() != MAGIC || header.getInt() != VERSION)
+        {
+            throw new IOException(file + " is not a solved position store");
+        }
+        if (header.getInt() != columnCount || header.getInt() != rowCount)
+        {
+            throw new IOException(file + " is for a different board size");
+        }
+
+        long end = HEADER_BYTES + (channel.size() - HEADER_BYTES) / RECORD_BYTES * RECORD_BYTES;
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_BYTES * 4096).order(ByteOrder.LITTLE_ENDIAN);
+        for (long position = HEADER_BYTES; position < end; )
+        {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), end - position));
+            while (buffer.hasRemaining())
+            {
+                int read = channel.read(buffer, position + buffer.position());
+                if (read < 0)
+                {
+                    throw new IOException(file + " changed while it was being read");
+                }
+            }
+            buffer.flip();
+            position += buffer.limit();
+            while (buffer.hasRemaining())
+            {
+                long key = buffer.getLong();
+                int value = buffer.getInt();
+                int column = buffer.getInt();
+                if (find(key) < 0)
+                {
+                    insert(key, value, column);
+                }
+            }
+        }
+        channel.truncate(end);  // drop a record left half-written by an earlier run
+    }
+
+    /**
+     * Finds the slot holding a position, or -1 if it is not in the table.
+     */
+    private int find(long key)
+    {
+        int mask = keys.length - 1;
+        for (int slot = hash(key) & mask; used[slot]; slot = (slot + 1) & mask)
+        {
+            if (keys[slot] == key)
+            {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Adds a position to the hash table, growing it when it gets half full.
+     */
+    private void insert(long key, int value, int column)
+    {
+        if ((count + 1) * 2 > keys.length)
+        {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            int[] oldColumns = columns;
+            boolean[] oldUsed = used;
+            keys = new long[oldKeys.length * 2];
+            values = new int[oldKeys.length * 2];
+            columns = new int[oldKeys.length * 2];
+            used = new boolean[oldKeys.length * 2];
+            count = 0;
+            for (int i = 0; i < oldKeys.length; i++)
+            {
+                if (oldUsed[i])
+                {
+                    insert(oldKeys[i], oldValues[i], oldColumns[i]);
+                }
+            }
+        }
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (used[slot])
+        {
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        columns[slot] = column;
+        used[slot] = true;
+        count++;
+    }
+
+    /**
+     * Folds a key into an int for the hash table. Keys are Zobrist hashes, so their bits are
+     * already well mixed.
+     */
+    private static int hash(long key)
+    {
+        return (int) (key ^ (key >>> 32));
+    }
+}
@@ -0,0 +1,120 @@
+/**
+ * How long agents may think: a limit on each move, a clock for the whole game, and an increment
+ * added to the clock after each move (a Fischer clock). Any of them can be left out by making
+ * it 0. A move that takes longer than its limit, or than the time left on the clock, loses the
+ * game.
+ * 
+ * With both limits set, a game on a standard board can take at most 42 times the move limit,
+ * and no more than the two game clocks plus the increments, so the length of a game is known
+ * in advance.
+ * 
+ * Your agent will not need to use this class.
+ */
+public final class TimeControl
+{
+    public static final TimeControl NONE = new TimeControl(0, 0, 0);   // no limits at all
+
+    private final long moveMillis;  // the most any one move may take; 0 for no limit
+    private final long gameMillis;  // each player's clock at the start of a game; 0 for no clock
+    private final long incrementMillis; // added to a player's clock after each of their moves
+
+    /**
+     * Creates a time control.
+     * 
+     * @param moveMillis the most any one move may take, in milliseconds, or 0 for no limit.
+     * @param gameMillis the time on each player's clock at the start of a game, in milliseconds,
+     *        or 0 for no clock.
+     * @param incrementMillis the time added to a player's clock after each of their moves, in
+     *        milliseconds. This has no effect without a clock.
+     */
+    public TimeControl(long moveMillis, long gameMillis, long incrementMillis)
+    {
+        if (moveMillis < 0 || gameMillis < 0 || incrementMillis < 0)
+        {
+            throw new IllegalArgumentException("Times cannot be negative");
+        }
+        this.moveMillis = moveMillis;
+        this.gameMillis = gameMillis;
+        this.incrementMillis = incrementMillis;
+    }
+
+    /**
+     * Reads a time control written as "move", "move/game" or "move/game+increment", in
+     * milliseconds; for example "1000", or "0/60000+500" for a minute a game plus half a second
+     * a move with no limit on any one move.
+     * 
+     * @param text the time control.
+     * @return the time control.
+     * @throws IllegalArgumentException if the text is not a time control.
+     */
+    public static TimeControl parse(String text)
+    {
+        try
+        {
+            int slash = text.indexOf('/');
+            int plus = text.indexOf('+');
+            long move = Long.parseLong(text.substring(0, slash >= 0 ? slash : plus >= 0 ? plus : text.length()));
+            long game = slash < 0 ? 0 : Long.parseLong(text.substring(slash + 1, plus >= 0 ? plus : text.length()));
+            long increment = plus < 0 ? 0 : Long.parseLong(text.substring(plus + 1));
+            return new TimeControl(move, game, increment);
+        }
+        catch (NumberFormatException | IndexOutOfBoundsException e)
+        {
+            throw new IllegalArgumentException("Not a time control: \"" + text + "\"; expected move[/game[+increment]]");
+        }
+    }
+
+    /**
+     * Returns the most any one move may take.
+     * 
+     * @return the limit in milliseconds, or 0 for no limit.
+     */
+    public long getMoveMillis()
+    {
+        return moveMillis;
+    }
+
+    /**
+     * Returns the time on each player's clock at the start of a game.
+     * 
+     * @return the time in milliseconds, or 0 for no clock.
+     */
+    public long getGameMillis()
+    {
+        return gameMillis;
+    }
+
+    /**
+     * Returns the time added to a player's clock after each of their moves.
+     * 
+     * @return the increment in milliseconds.
+     */
+    public long getIncrementMillis()
+    {
+        return incrementMillis;
+    }
+
+    /**
+     * Checks whether moves are timed at all.
+     * 
+     * @return true if there is a move limit or a game clock.
+     */
+    public boolean isTimed()
+    {
+        return moveMillis > 0 || gameMillis > 0;
+    }
+
+    /**
+     * Describes the time control the way parse() reads it.
+     * 
+     * @return the description.
+     */
+    public String toString()
+    {
+        if (gameMillis == 0)
+        {
+            return String.valueOf(moveMillis);
+        }
+        return moveMillis + "/" + gameMillis + (incrementMillis > 0 ? "+" + incrementMillis : "");
+    }
+}
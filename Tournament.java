@@ -0,0 +1,313 @@
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Plays many games between two agents without a window, several at a time, and reports the
+ * results.
+ * 
+ * Agents are named by class, for example RandomAgent, BeginnerAgent, IntermediateAgent,
+ * AdvancedAgent, BrilliantAgent, MyAgent or MCTSAgent, and must have a constructor taking a
+ * Connect4Game and a boolean, like every agent. Each game gets its own Connect4Game and its own
+ * pair of agents, so games on different threads share nothing. Over every four games each agent
+ * plays each color, and each color moves first, equally often.
+ * 
+ * Anything the agents print while the games are running is thrown away.
+ * 
+ * If an archive file is given, every game is added to it, in order. See GameRecordWriter.
+ * 
+ * If a time control is given, an agent that takes too long over a move loses the game, and the
+ * time each game can take is limited. See TimeControl.
+ * 
+ * While the games run, move times and other metrics can be watched over JMX (see
+ * MetricsRegistry), and if a metrics file is given, they are written to it as CSV at the end.
+ * Moves, searches and games are also recorded by any Java Flight Recorder recording that is
+ * running, even one started on the tournament with jcmd (see FlightEvents).
+ * 
+ * Usage: java Tournament agentA agentB [columns rows games threads [archive [winLength [time [metrics]]]]]
+ * The defaults are a 7x6 board, 100 games, a thread for each processor, no archive ("-" for
+ * none when giving a win length), four in a row to win, no time limits ("0" for none when
+ * giving a metrics file), and no metrics file. The time is written move[/game[+increment]] in
+ * milliseconds, for example 1000 or 0/60000+500.
+ */
+public class Tournament
+{
+    private List<Constructor<? extends Agent>> agents;  // how to make each of the two agents
+    private int columnCount;
+    private int rowCount;
+    private int winLength = Connect4Game.DEFAULT_WIN_LENGTH;
+    private TimeControl timeControl = TimeControl.NONE;
+
+    private int[] wins = new int[2];    // the games each agent won
+    private int draws;
+    private int[] forfeits = new int[2];    // the games each agent lost by breaking the rules
+    private long[] moveNanos = new long[2]; // the total time each agent spent moving
+    private long[] moveCounts = new long[2];    // the number of moves each agent made
+    private List<String> errors = new ArrayList<String>();  // why each forfeited game was forfeited
+    private GameRecordWriter archive;   // where to keep every game, or null not to keep them
+
+    public static void main(String[] args) throws Exception
+    {
+        if (args.length < 2)
+        {
+            System.out.println("Usage: java Tournament agentA agentB [columns rows games threads [archive [winLength [time [metrics]]]]]");
+            return;
+        }
+        int columns = args.length > 2 ? Integer.parseInt(args[2]) : 7;
+        int rows = args.length > 3 ? Integer.parseInt(args[3]) : 6;
+        int games = args.length > 4 ? Integer.parseInt(args[4]) : 100;
+        int threads = args.length > 5 ? Integer.parseInt(args[5]) : Runtime.getRuntime().availableProcessors();
+
+        Tournament tournament = new Tournament(args[0], args[1], columns, rows);
+        if (args.length > 6 && !args[6].equals("-"))
+        {
+            tournament.setArchive(new GameRecordWriter(new File(args[6])));
+        }
+        if (args.length > 7)
+        {
+            tournament.setWinLength(Integer.parseInt(args[7]));
+        }
+        if (args.length > 8)
+        {
+            tournament.setTimeControl(TimeControl.parse(args[8]));
+        }
+        MetricsRegistry metrics = MetricsRegistry.getDefault();
+        metrics.register();
+        PrintStream out = silenceOutput();
+        long start = System.nanoTime();
+        try
+        {
+            tournament.play(games, threads);
+        }
+        finally
+        {
+            System.setOut(out);
+            if (tournament.archive != null)
+            {
+                tournament.archive.close();
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        out.println(args[0] + " vs. " + args[1] + " on " + columns + "x" + rows + ", " + tournament.winLength
+            + " in a row: " + games + " games on " + threads + " threads"
+            + (tournament.timeControl.isTimed() ? ", time " + tournament.timeControl + " ms" : ""));
+        for (int a = 0; a < 2; a++)
+        {
+            out.println(tournament.describe(a));
+        }
+        out.println(String.format("%.1f games/s", games * 1e9 / elapsed));
+        for (String error : tournament.errors)
+        {
+            out.println("Forfeit: " + error);
+        }
+        if (args.length > 9)
+        {
+            metrics.writeCsv(new File(args[9]));
+            out.println("Metrics written to " + args[9]);
+        }
+    }
+
+    /**
+     * Sets up a tournament between two agents.
+     * 
+     * @param agentA the class name of the first agent.
+     * @param agentB the class name of the second agent.
+     * @param columns the number of columns in the game board.
+     * @param rows the number of rows in the game board.
+     * @throws ReflectiveOperationException if either agent cannot be found or has no
+     *         (Connect4Game, boolean) constructor.
+     */
+    public Tournament(String agentA, String agentB, int columns, int rows) throws ReflectiveOperationException
+    {
+        agents = Arrays.asList(findAgent(agentA), findAgent(agentB));
+        columnCount = columns;
+        rowCount = rows;
+    }
+
+    /**
+     * Sets the number of tokens in a row needed to win. The default is four.
+     * 
+     * @param winLength the win length.
+     */
+    public void setWinLength(int winLength)
+    {
+        this.winLength = winLength;
+    }
+
+    /**
+     * Sets how long the agents may think. The default is no limit.
+     * 
+     * @param timeControl the time control.
+     */
+    public void setTimeControl(TimeControl timeControl)
+    {
+        this.timeControl = timeControl;
+    }
+
+    /**
+     * Sets where to keep every game played. The tournament does not close the archive.
+     * 
+     * @param archive the archive, or null not to keep the games.
+     */
+    public void setArchive(GameRecordWriter archive)
+    {
+        this.archive = archive;
+    }
+
+    /**
+     * Plays the games and adds up the results.
+     * 
+     * @param games the number of games to play.
+     * @param threads the number of games to play at once.
+     * @throws Exception if a game could not be set up, was interrupted, or could not be archived.
+     */
+    public void play(int games, int threads) throws Exception
+    {
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+        try
+        {
+            List<Future<GameResult>> results = new ArrayList<Future<GameResult>>();
+            for (int i = 0; i < games; i++)
+            {
+                final int index = i;
+                results.add(pool.submit(new Callable<GameResult>() {
+                        public GameResult call() throws Exception
+                        {
+                            return playGame(index);
+                        }
+                    }));
+            }
+            for (int i = 0; i < games; i++)
+            {
+                GameResult result = results.get(i).get();
+                results.set(i, null);   // so finished games can be collected before the rest are
+                int red = (i % 2 == 0) ? 0 : 1;    // which agent played red
+                if (result.winner == 'N')
+                {
+                    draws++;
+                }
+                else
+                {
+                    int winner = (result.winner == 'R') ? red : 1 - red;
+                    wins[winner]++;
+                    if (result.error != null)
+                    {
+                        forfeits[1 - winner]++;
+                        errors.add("game " + i + ": " + result.error);
+                    }
+                }
+                if (archive != null)
+                {
+                    archive.write(result.record);
+                }
+                moveNanos[red] += result.moveNanos[0];
+                moveCounts[red] += result.moveCounts[0];
+                moveNanos[1 - red] += result.moveNanos[1];
+                moveCounts[1 - red] += result.moveCounts[1];
+            }
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Describes how one agent did, for printing.
+     * 
+     * @param agent 0 for the first agent, 1 for the second.
+     * @return the agent's class and seat (A or B, as named on the command line), wins, draws,
+     *         losses and average move time.
+     */
+    public String describe(int agent)
+    {
+        double averageMillis = moveCounts[agent] > 0 ? moveNanos[agent] / 1e6 / moveCounts[agent] : 0;
+        return String.format("%s (%s): %d wins, %d draws, %d losses (%d forfeits), %.3f ms per move",
+            agents.get(agent).getDeclaringClass().getName(), agent == 0 ? "A" : "B", wins[agent], draws,
+            wins[1 - agent], forfeits[agent], averageMillis);
+    }
+
+    /**
+     * Plays one game on a fresh board with fresh agents, and keeps only what play() adds up, so
+     * that the board and agents can be collected as soon as the game ends.
+     */
+    private GameResult playGame(int index) throws ReflectiveOperationException
+    {
+        Connect4Game game = new Connect4Game(columnCount, rowCount, winLength);
+        boolean aIsRed = (index % 2 == 0);
+        Agent red = agents.get(aIsRed ? 0 : 1).newInstance(game, true);
+        Agent yellow = agents.get(aIsRed ? 1 : 0).newInstance(game, false);
+        try
+        {
+            Connect4Match match = new Connect4Match(game, red, yellow, timeControl);
+            char winner = match.play(index / 2 % 2 == 0);
+            return new GameResult(winner, match.getError(), archive != null ? match.getRecord(winner) : null,
+                new long[] { match.getMoveNanos(true), match.getMoveNanos(false) },
+                new int[] { match.getMoveCount(true), match.getMoveCount(false) });
+        }
+        finally
+        {
+            red.close();
+            yellow.close();
+        }
+    }
+
+    /**
+     * Throws away everything printed to System.out from now on, so agents cannot slow down
+     * headless games by printing.
+     * 
+     * @return the stream System.out used to be, to print to and to restore afterwards.
+     */
+    static PrintStream silenceOutput()
+    {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+                public void write(int b)
+                {
+                }
+
+                public void write(byte[] b, int off, int len)
+                {
+                }
+            }));
+        return out;
+    }
+
+    /**
+     * Finds the (Connect4Game, boolean) constructor of an agent class.
+     */
+    static Constructor<? extends Agent> findAgent(String name) throws ReflectiveOperationException
+    {
+        Class<? extends Agent> type = Class.forName(name).asSubclass(Agent.class);
+        return type.getConstructor(Connect4Game.class, boolean.class);
+    }
+
+    /**
+     * What play() needs to know about one finished game.
+     */
+    private static final class GameResult
+    {
+        final char winner;  // 'R', 'Y' or 'N', as returned by Connect4Match.play()
+        final String error; // why the game was forfeited, or null
+        final GameRecord record;    // the game, for the archive; null if there is no archive
+        final long[] moveNanos; // the time red, then yellow, spent moving
+        final int[] moveCounts; // the number of moves red, then yellow, made
+
+        GameResult(char winner, String error, GameRecord record, long[] moveNanos, int[] moveCounts)
+        {
+            this.winner = winner;
+            this.error = error;
+            this.record = record;
+            this.moveNanos = moveNanos;
+            this.moveCounts = moveCounts;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+import java.util.Arrays;
+
+/**
+ * A fixed-size table of search results, keyed by the position hash from Connect4Game.getHash().
+ * 
+ * The table is one long[] allocated when it is created, so it never grows and never creates
+ * objects while a search is running. Positions are stored in buckets of two entries: the first
+ * entry keeps the deepest result seen for the bucket, and the second is always replaced. Each
+ * entry is two longs: the packed result, and the position's key XORed with the packed result.
+ * A reader only accepts an entry if the two words XOR back to the key it is looking for, so
+ * several search threads can share one table without locks; an entry that was half-written by
+ * another thread simply reads as a miss.
+ * 
+ * Your agent MAY use this class to avoid searching the same position twice.
+ */
+public class TranspositionTable
+{
+    public static final int EXACT = 1;  // the score is the exact value of the position
+    public static final int LOWER_BOUND = 2;    // the search failed high: the value is at least the score
+    public static final int UPPER_BOUND = 3;    // the search failed low: the value is at most the score
+    public static final int NO_MOVE = 255;  // stored as the best move when there is none
+
+    private static final int MAX_BUCKETS = 1 << 28; // keeps the table within the largest long[] Java allows
+
+    private final long[] table; // four longs per bucket: (key ^ data, data) for each of the two entries
+    private final int bucketMask;   // the number of buckets minus one; the number of buckets is a power of two
+    private int generation; // which search the entries were written by, so stale entries can be replaced
+
+    /**
+     * Creates a new table using about the given amount of memory.
+     * 
+     * @param megabytes the size of the table, in megabytes.
+     */
+    public TranspositionTable(int megabytes)
+    {
+        long buckets = Math.max(1L, ((long) megabytes << 20) / 32);
+        int size = 1;
+        while (size * 2L <= buckets && size < MAX_BUCKETS)
+        {
+            size *= 2;
+        }
+        table = new long[size * 4];
+        bucketMask = size - 1;
+    }
+
+    /**
+     * Looks up a position.
+     * 
+     * @param key the position's hash.
+     * @return the packed entry for the position, or 0 if the position is not in the table. Use
+     *         the static get methods to unpack the entry.
+     */
+    public long probe(long key)
+    {
+        int i = bucketIndex(key);
+        long data = table[i + 1];
+        if ((table[i] ^ data) == key && data != 0)
+        {
+            return data;
+        }
+        data = table[i + 3];
+        if ((table[i + 2] ^ data) == key && data != 0)
+        {
+            return data;
+        }
+        return 0;
+    }
+
+    /**
+     * Stores the result of searching a position. The result goes in the bucket's first entry if
+     * it is at least as deep as what is there, or if that entry is from an earlier search;
+     * otherwise it goes in the second entry.
+     * 
+     * @param key the position's hash.
+     * @param depth how deep the position was searched, from 0 to 255.
+     * @param bound EXACT, LOWER_BOUND or UPPER_BOUND.
+     * @param score the score of the position, which must fit in a short.
+     * @param move the best column found, or NO_MOVE.
+     */
+    public void store(long key, int depth, int bound, int score, int move)
+    {
+        long data = pack(depth, bound, score, move, generation);
+        int i = bucketIndex(key);
+        long old = table[i + 1];
+        if ((table[i] ^ old) == key || getDepth(old) <= depth || getGeneration(old) != generation)
+        {
+            table[i + 1] = data;
+            table[i] = key ^ data;
+        }
+        else
+        {
+            table[i + 3] = data;
+            table[i + 2] = key ^ data;
+        }
+    }
+
+    /**
+     * Marks the start of a new search, so entries from earlier searches can be replaced even
+     * if they are deeper.
+     */
+    public void newSearch()
+    {
+        generation = (generation + 1) & 0x3F;
+    }
+
+    /**
+     * Empties the table.
+     */
+    public void clear()
+    {
+        Arrays.fill(table, 0L);
+    }
+
+    /**
+     * Returns the number of entries the table can hold.
+     * 
+     * @return the number of entries.
+     */
+    public int capacity()
+    {
+        return table.length / 2;
+    }
+
+    /**
+     * Unpacks the score of an entry.
+     * 
+     * @param entry an entry returned by probe().
+     * @return the stored score.
+     */
+    public static int getScore(long entry)
+    {
+        return (short) entry;
+    }
+
+    /**
+     * Unpacks the search depth of an entry.
+     * 
+     * @param entry an entry returned by probe().
+     * @return the stored depth.
+     */
+    public static int getDepth(long entry)
+    {
+        return (int) (entry >>> 16) & 0xFF;
+    }
+
+    /**
+     * Unpacks the bound type of an entry.
+     * 
+     * @param entry an entry returned by probe().
+     * @return EXACT, LOWER_BOUND or UPPER_BOUND.
+     */
+    public static int getBound(long entry)
+    {
+        return (int) (entry >>> 24) & 0x3;
+    }
+
+    /**
+     * Unpacks the best move of an entry.
+     * 
+     * @param entry an entry returned by probe().
+     * @return the stored column, or NO_MOVE.
+     */
+    public static int getMove(long entry)
+    {
+        return (int) (entry >>> 26) & 0xFF;
+    }
+
+    /**
+     * Packs the parts of an entry into a single long. The bound type is never 0, so a packed
+     * entry is never 0 either.
+     */
+    private static long pack(int depth, int bound, int score, int move, int generation)
+    {
+        return (score & 0xFFFFL)
+            | ((long) (depth & 0xFF) << 16)
+            | ((long) (bound & 0x3) << 24)
+            | ((long) (move & 0xFF) << 26)
+            | ((long) generation << 34);
+    }
+
+    /**
+     * Unpacks which search wrote an entry.
+     */
+    private static int getGeneration(long entry)
+    {
+        return (int) (entry >>> 34) & 0x3F;
+    }
+
+    /**
+     * Finds the first long of the bucket for a key.
+     */
+    private int bucketIndex(long key)
+    {
+        return ((int) (key ^ (key >>> 32)) & bucketMask) << 2;
+    }
+}
@@ -0,0 +1,291 @@
+/**
+ * Scores positions for a search, by keeping count of the red and yellow tokens in every window
+ * of slots in a row on the board that is as long as a winning line.
+ * 
+ * The windows through each slot are worked out once, when the evaluator is made. After that,
+ * each move only updates the windows through the slot it fills, and taking the move back only
+ * undoes that, so getting the score of a position costs nothing however big the board is. Each
+ * window's state is kept as a single number made of its counts, and the score of every
+ * possible state is worked out in advance, so updating a window is a table lookup.
+ * 
+ * A window that holds tokens of only one color counts for that color: more the fewer tokens it
+ * still needs. A window one token short is a threat, and counts extra if its empty slot is on
+ * a row that suits its owner: an odd row, counting from 1 at the bottom, for the player who
+ * moved first, and an even row for the other, since that is where the end of the game tends to
+ * let each player fill it. Tokens in the centre column also count a little, since they can
+ * take part in the most lines.
+ * 
+ * Your agent MAY use this class to score positions.
+ */
+public class WindowEvaluator
+{
+    private static final int[] SHORT_SCORE = {0, 20, 5, 1}; // the score of a window of one color, by the tokens it still needs
+    private static final int GOOD_THREAT = 30;  // extra for a threat whose empty slot is on a row that suits its owner
+    private static final int CENTER = 4;    // for each token in the centre column
+
+    private final int columnCount;
+    private final int rowCount;
+    private final int winLength;    // the number of tokens in a row needed to win, and so the length of a window
+    private final int unit; // winLength + 1: the base of the digits of a window's state (see windowScore)
+    private final int[] windowStart;    // for each slot, where its windows start in windowIndex and windowOdd
+    private final int[] windowIndex;    // the windows through each slot
+    private final int[] windowOdd;  // what a token in the slot adds to each of those windows' odd-row count digit
+    private final int[] centerWeight;   // for each slot, what a token there is worth for being central
+    private final int[] redFirstScores; // the score of every window state when red moved first
+    private final int[] yellowFirstScores;  // the same when yellow moved first
+
+    private final int[] state;  // for each window, its counts (see windowScore)
+    private int[] scores;   // whichever of the two score tables suits the game
+    private int score;  // the sum of every window and centre score, positive when red is ahead
+
+    /**
+     * Creates an evaluator for a board size, for games won by four in a row. Slots are numbered
+     * column * rows + row, with row 0 at the top, as in Connect4Game.
+     * 
+     * @param columns the number of columns in the game board.
+     * @param rows the number of rows in the game board.
+     */
+    public WindowEvaluator(int columns, int rows)
+    {
+        this(columns, rows, Connect4Game.DEFAULT_WIN_LENGTH);
+    }
+
+    /**
+     * Creates an evaluator for a board size and win length.
+     * 
+     * @param columns the number of columns in the game board.
+     * @param rows the number of rows in the game board.
+     * @param winLength the number of tokens in a row needed to win.
+     */
+    public WindowEvaluator(int columns, int rows, int winLength)
+    {
+        columnCount = columns;
+        rowCount = rows;
+        this.winLength = winLength;
+        unit = winLength + 1;
+        int[][] directions = {{1, 0}, {0, 1}, {1, 1}, {1, -1}};
+        int windows = 0;
+        int[] perSlot = new int[columns * rows];
+        for (int[] d : directions)
+        {
+            for (int c = 0; c < columns; c++)
+            {
+                for (int r = 0; r < rows; r++)
+                {
+                    if (fits(c, r, d, columns, rows))
+                    {
+                        for (int k = 0; k < winLength; k++)
+                        {
+                            perSlot[(c + k * d[0]) * rows + r + k * d[1]]++;
+                        }
+                        windows++;
+                    }
+                }
+            }
+        }
+        windowStart = new int[columns * rows + 1];
+        for (int slot = 0; slot < perSlot.length; slot++)
+        {
+            windowStart[slot + 1] = windowStart[slot] + perSlot[slot];
+        }
+        windowIndex = new int[windowStart[perSlot.length]];
+        windowOdd = new int[windowIndex.length];
+        state = new int[windows];
+        int w = 0;
+        for (int[] d : directions)
+        {
+            for (int c = 0; c < columns; c++)
+            {
+                for (int r = 0; r < rows; r++)
+                {
+                    if (fits(c, r, d, columns, rows))
+                    {
+                        int oddSlots = 0;
+                        for (int k = 0; k < winLength; k++)
+                        {
+                            int row = r + k * d[1];
+                            int slot = (c + k * d[0]) * rows + row;
+                            int at = windowStart[slot] + --perSlot[slot];
+                            windowIndex[at] = w;
+                            if ((rows - row) % 2 == 1)
+                            {
+                                windowOdd[at] = unit * unit;
+                                oddSlots++;
+                            }
+                        }
+                        state[w] = oddSlots * unit * unit * unit;
+                        w++;
+                    }
+                }
+            }
+        }
+        centerWeight = new int[columns * rows];
+        for (int c = 0; c < columns; c++)
+        {
+            if (Math.abs(2 * c - (columns - 1)) <= 1)   // the centre column, or the two nearest the centre
+            {
+                for (int r = 0; r < rows; r++)
+                {
+                    centerWeight[c * rows + r] = columns % 2 == 1 ? CENTER : CENTER / 2;
+                }
+            }
+        }
+        redFirstScores = new int[unit * unit * unit * unit];
+        yellowFirstScores = new int[redFirstScores.length];
+        for (int i = 0; i < redFirstScores.length; i++)
+        {
+            redFirstScores[i] = windowScore(i, true);
+            yellowFirstScores[i] = windowScore(i, false);
+        }
+        scores = redFirstScores;
+    }
+
+    /**
+     * Counts every token of a game from scratch. The game must have the size and win length
+     * this evaluator was made for.
+     * 
+     * @param game the game.
+     */
+    public void reset(Connect4Game game)
+    {
+        for (int w = 0; w < state.length; w++)
+        {
+            state[w] -= state[w] % (unit * unit * unit);    // keep only the odd slot count
+        }
+        score = 0;
+        scores = game.getRedPlayedFirst() ? redFirstScores : yellowFirstScores;
+        for (int c = 0; c < columnCount; c++)
+        {
+            for (int r = 0; r < rowCount; r++)
+            {
+                if (game.isFilled(c, r))
+                {
+                    drop(c, r, game.isRed(c, r));
+                }
+            }
+        }
+    }
+
+    /**
+     * Updates the counts for a token added to the board.
+     * 
+     * @param column the column of the token.
+     * @param row the row of the token, with row 0 at the top.
+     * @param red true if the token is red.
+     */
+    public void drop(int column, int row, boolean red)
+    {
+        int slot = column * rowCount + row;
+        update(slot, red, 1);
+        score += red ? centerWeight[slot] : -centerWeight[slot];
+    }
+
+    /**
+     * Updates the counts for a token taken off the board.
+     * 
+     * @param column the column of the token.
+     * @param row the row of the token, with row 0 at the top.
+     * @param red true if the token is red.
+     */
+    public void undo(int column, int row, boolean red)
+    {
+        int slot = column * rowCount + row;
+        update(slot, red, -1);
+        score -= red ? centerWeight[slot] : -centerWeight[slot];
+    }
+
+    /**
+     * Returns the score of the current position.
+     * 
+     * @param red true to score it for red, false for yellow.
+     * @return the score, positive when that player is ahead.
+     */
+    public int evaluate(boolean red)
+    {
+        return red ? score : -score;
+    }
+
+    /**
+     * Returns the number of columns of the board this evaluator is for.
+     * 
+     * @return the number of columns.
+     */
+    public int getColumnCount()
+    {
+        return columnCount;
+    }
+
+    /**
+     * Returns the number of rows of the board this evaluator is for.
+     * 
+     * @return the number of rows.
+     */
+    public int getRowCount()
+    {
+        return rowCount;
+    }
+
+    /**
+     * Returns the number of tokens in a row needed to win in the games this evaluator is for.
+     * 
+     * @return the win length.
+     */
+    public int getWinLength()
+    {
+        return winLength;
+    }
+
+    /**
+     * Adds a token to, or takes it from, every window through its slot, and updates the score
+     * to match.
+     */
+    private void update(int slot, boolean red, int sign)
+    {
+        int color = red ? 1 : unit;
+        for (int i = windowStart[slot]; i < windowStart[slot + 1]; i++)
+        {
+            int w = windowIndex[i];
+            int old = state[w];
+            int now = old + sign * (color + windowOdd[i]);
+            state[w] = now;
+            score += scores[now] - scores[old];
+        }
+    }
+
+    /**
+     * Scores one window state for red. The state is a number in base winLength + 1, whose
+     * digits from the lowest are: the red tokens in the window, the yellow tokens, the tokens
+     * on odd rows, and the slots on odd rows. The last two tell whether the empty slot of a
+     * threat is on an odd row.
+     */
+    private int windowScore(int state, boolean redFirst)
+    {
+        int red = state % unit, yellow = state / unit % unit;
+        int oddFilled = state / (unit * unit) % unit, oddSlots = state / (unit * unit * unit);
+        if ((red > 0) == (yellow > 0))  // empty, or blocked for both
+        {
+            return 0;
+        }
+        int needed = winLength - red - yellow;
+        int value = needed < SHORT_SCORE.length ? SHORT_SCORE[needed] : 0;
+        if (needed == 1)
+        {
+            boolean odd = oddSlots - oddFilled == 1;
+            if (odd == ((red > 0) == redFirst))
+            {
+                value += GOOD_THREAT;
+            }
+        }
+        return red > 0 ? value : -value;
+    }
+
+    /**
+     * Checks whether a window starting at a slot and going in a direction fits on the board.
+     */
+    private boolean fits(int column, int row, int[] direction, int columns, int rows)
+    {
+        int lastColumn = column + (winLength - 1) * direction[0];
+        int lastRow = row + (winLength - 1) * direction[1];
+        return lastColumn < columns && lastRow >= 0 && lastRow < rows;
+    }
+}
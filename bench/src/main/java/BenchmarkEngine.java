@@ -0,0 +1,122 @@
+import java.util.Random;
+
+/**
+ * Gives the benchmarks in connect4.bench access to the game, which is in the default package.
+ * See connect4.bench.Engine.
+ */
+public class BenchmarkEngine implements connect4.bench.Engine
+{
+    public Object randomPosition(int columns, int rows, double fill, long seed)
+    {
+        Random random = new Random(seed);
+        Connect4Game game = new Connect4Game(columns, rows);
+        boolean redFirst = random.nextBoolean();
+        game.setRedPlayedFirst(redFirst);
+        boolean red = redFirst;
+        int target = (int) Math.round(columns * rows * fill);
+        while (game.getTokenCount() < target && playSafeMove(game, red, random))
+        {
+            red = !red;
+        }
+        return game;
+    }
+
+    public Object withOneMoreMove(Object game, long seed)
+    {
+        Connect4Game after = new Connect4Game((Connect4Game) game);
+        Random random = new Random(seed);
+        int column;
+        do
+        {
+            column = random.nextInt(after.getColumnCount());
+        }
+        while (!after.isPlayable(column));
+        after.drop(column, redToMove(game));
+        return after;
+    }
+
+    public boolean redToMove(Object game)
+    {
+        Connect4Game g = (Connect4Game) game;
+        return (g.getTokenCount() % 2 == 0) == g.getRedPlayedFirst();
+    }
+
+    public char gameWon(Object game)
+    {
+        return ((Connect4Game) game).gameWon();
+    }
+
+    public boolean boardFull(Object game)
+    {
+        return ((Connect4Game) game).boardFull();
+    }
+
+    public char[][] boardMatrix(Object game)
+    {
+        return ((Connect4Game) game).getBoardMatrix();
+    }
+
+    public String validate(Object before, Object after)
+    {
+        return ((Connect4Game) before).validate((Connect4Game) after);
+    }
+
+    public Object copy(Object game)
+    {
+        return new Connect4Game((Connect4Game) game);
+    }
+
+    public void clearBoard(Object game)
+    {
+        ((Connect4Game) game).clearBoard();
+    }
+
+    public int undo(Object game)
+    {
+        return ((Connect4Game) game).undo();
+    }
+
+    public Object newAgent(String type, Object game, boolean red, long nodes)
+    {
+        if (type.equals("MyAgent"))
+        {
+            MyAgent agent = new MyAgent((Connect4Game) game, red, 3600000);   // an hour: the node limit always stops it first
+            agent.setNodeLimit(nodes);
+            return agent;
+        }
+        if (type.equals("TestingAgent"))
+        {
+            return new TestingAgent((Connect4Game) game, red);
+        }
+        throw new IllegalArgumentException("Unknown agent " + type);
+    }
+
+    public void move(Object agent)
+    {
+        ((Agent) agent).move();
+    }
+
+    /**
+     * Plays a random move that does not win and leaves the board with space, if there is one.
+     * 
+     * @return false if there is no such move.
+     */
+    private static boolean playSafeMove(Connect4Game game, boolean red, Random random)
+    {
+        int columns = game.getColumnCount();
+        int start = random.nextInt(columns);
+        for (int k = 0; k < columns; k++)
+        {
+            int column = (start + k) % columns;
+            if (game.drop(column, red) >= 0)
+            {
+                if (game.getWinner() == 'N' && !game.boardFull())
+                {
+                    return true;
+                }
+                game.undo();
+            }
+        }
+        return false;
+    }
+}
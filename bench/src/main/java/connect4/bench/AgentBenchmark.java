@@ -0,0 +1,97 @@
+package connect4.bench;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Times one call of an agent's move() method, on seeded random positions.
+ * 
+ * MyAgent normally searches for a fixed time, which would make every result the same. Here
+ * it searches a fixed number of nodes instead, so the benchmark measures how quickly it gets
+ * through them. Its transposition table is kept between calls, as it is between the moves of
+ * a real game. After each move the token is taken back, so every call starts from the same
+ * position.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AgentBenchmark
+{
+    private static final int POSITIONS = 8; // a power of two; few, since each MyAgent has its own table
+
+    @Param({"MyAgent", "TestingAgent"})
+    public String agent;
+
+    @Param({"7x6", "10x10", "20x20"})
+    public String size; // columns x rows
+
+    @Param({"0.25", "0.5", "0.75"})
+    public double fill; // the share of slots filled
+
+    @Param({"20000"})
+    public long nodes;  // how many nodes each MyAgent search may visit
+
+    private Engine engine;
+    private Object[] games;
+    private Object[] agents;    // agents[i] plays in games[i], as the player to move
+    private int next;   // the index of the next position to use
+    private PrintStream out;    // System.out, while the agents' printing is thrown away
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        out = System.out;
+        System.setOut(new PrintStream(new OutputStream() {  // TestingAgent prints a line per move
+                public void write(int b)
+                {
+                }
+
+                public void write(byte[] b, int off, int len)
+                {
+                }
+            }));
+        engine = Engine.load();
+        int columns = Sizes.columns(size);
+        int rows = Sizes.rows(size);
+        games = new Object[POSITIONS];
+        agents = new Object[POSITIONS];
+        for (int i = 0; i < POSITIONS; i++)
+        {
+            games[i] = engine.randomPosition(columns, rows, fill, Sizes.seed(size, fill, i));
+            agents[i] = engine.newAgent(agent, games[i], engine.redToMove(games[i]), nodes);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        System.setOut(out);
+    }
+
+    @Benchmark
+    public int move()
+    {
+        int i = next;
+        next = (i + 1) & (POSITIONS - 1);
+        engine.move(agents[i]);
+        return engine.undo(games[i]);
+    }
+}
@@ -0,0 +1,94 @@
+package connect4.bench;
+
+/**
+ * The operations the benchmarks measure, reached through an interface.
+ * 
+ * The game's classes are in the default package, which code in a named package cannot refer
+ * to, and JMH will not run benchmarks in the default package. So the benchmarks live here and
+ * call the game through this interface, which BenchmarkEngine, in the default package,
+ * implements. Games and agents are passed around as plain Objects. The benchmarks only ever see
+ * one implementation, so the JIT inlines these calls and they cost no more than a cast.
+ */
+public interface Engine
+{
+    /**
+     * Loads the implementation from the default package.
+     * 
+     * @return the engine.
+     */
+    static Engine load()
+    {
+        try
+        {
+            return (Engine) Class.forName("BenchmarkEngine").getDeclaredConstructor().newInstance();
+        }
+        catch (ReflectiveOperationException e)
+        {
+            throw new IllegalStateException("BenchmarkEngine is missing from the build", e);
+        }
+    }
+
+    /**
+     * Makes a position by playing random moves, never a winning one, until a share of the
+     * board is filled, or until every move would win.
+     * 
+     * @param columns the number of columns in the game board.
+     * @param rows the number of rows in the game board.
+     * @param fill the share of slots to fill, between 0 and 1.
+     * @param seed the seed of the random moves, so the same arguments always give the same position.
+     * @return the game.
+     */
+    Object randomPosition(int columns, int rows, double fill, long seed);
+
+    /**
+     * Plays one more legal move in a copy of a position, for validate() to check.
+     * 
+     * @param game the position.
+     * @param seed the seed of the random move.
+     * @return the copy with one more token.
+     */
+    Object withOneMoreMove(Object game, long seed);
+
+    /**
+     * Returns whether red is to move in a position made by randomPosition().
+     * 
+     * @param game the position.
+     * @return true if red is to move.
+     */
+    boolean redToMove(Object game);
+
+    /** Calls Connect4Game.gameWon(). */
+    char gameWon(Object game);
+
+    /** Calls Connect4Game.boardFull(). */
+    boolean boardFull(Object game);
+
+    /** Calls Connect4Game.getBoardMatrix(). */
+    char[][] boardMatrix(Object game);
+
+    /** Calls Connect4Game.validate() on the game before a move, passing the game after it. */
+    String validate(Object before, Object after);
+
+    /** Calls the Connect4Game copy constructor. */
+    Object copy(Object game);
+
+    /** Calls Connect4Game.clearBoard(). */
+    void clearBoard(Object game);
+
+    /** Calls Connect4Game.undo(). */
+    int undo(Object game);
+
+    /**
+     * Makes an agent.
+     * 
+     * @param type "MyAgent" or "TestingAgent".
+     * @param game the game the agent plays.
+     * @param red true if the agent is red.
+     * @param nodes for MyAgent, the most nodes each search may visit.
+     * @return the agent.
+     */
+    Object newAgent(String type, Object game, boolean red, long nodes);
+
+    /** Calls Agent.move(). */
+    void move(Object agent);
+}
@@ -0,0 +1,112 @@
+package connect4.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Times the Connect4Game methods the game loop and the agents call most.
+ * 
+ * Each benchmark cycles through a fixed set of seeded random positions, so the numbers do not
+ * depend on one lucky position and are the same from run to run. None of the positions is won,
+ * since a won game ends at once; gameWon() is measured on the common case of asking and
+ * getting 'N'.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class GameBenchmark
+{
+    private static final int POSITIONS = 64;    // a power of two, so the next index is a mask away
+
+    @Param({"7x6", "10x10", "20x20"})
+    public String size; // columns x rows
+
+    @Param({"0.25", "0.5", "0.75"})
+    public double fill; // the share of slots filled
+
+    private Engine engine;
+    private Object[] positions;
+    private Object[] afterMove;  // each position with one more token, for validate()
+    private Object scratch; // a game to clear
+    private int next;   // the index of the next position to use
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        engine = Engine.load();
+        int columns = Sizes.columns(size);
+        int rows = Sizes.rows(size);
+        positions = new Object[POSITIONS];
+        afterMove = new Object[POSITIONS];
+        for (int i = 0; i < POSITIONS; i++)
+        {
+            positions[i] = engine.randomPosition(columns, rows, fill, Sizes.seed(size, fill, i));
+            afterMove[i] = engine.withOneMoreMove(positions[i], ~Sizes.seed(size, fill, i));
+        }
+        scratch = engine.copy(positions[0]);
+    }
+
+    @Benchmark
+    public char gameWon()
+    {
+        return engine.gameWon(positions[nextIndex()]);
+    }
+
+    @Benchmark
+    public boolean boardFull()
+    {
+        return engine.boardFull(positions[nextIndex()]);
+    }
+
+    @Benchmark
+    public char[][] getBoardMatrix()
+    {
+        return engine.boardMatrix(positions[nextIndex()]);
+    }
+
+    @Benchmark
+    public String validate()
+    {
+        int i = nextIndex();
+        return engine.validate(positions[i], afterMove[i]);
+    }
+
+    @Benchmark
+    public Object copyConstructor()
+    {
+        return engine.copy(positions[nextIndex()]);
+    }
+
+    /**
+     * Clears the same game over and over. clearBoard() does the same work however full the
+     * board is, so it does not need refilling between calls.
+     */
+    @Benchmark
+    public Object clearBoard()
+    {
+        engine.clearBoard(scratch);
+        return scratch;
+    }
+
+    private int nextIndex()
+    {
+        int i = next;
+        next = (i + 1) & (POSITIONS - 1);
+        return i;
+    }
+}
@@ -0,0 +1,36 @@
+package connect4.bench;
+
+/**
+ * Reads the board sizes and seeds shared by the benchmarks.
+ */
+final class Sizes
+{
+    private Sizes()
+    {
+    }
+
+    /**
+     * Reads the columns from a size such as "7x6".
+     */
+    static int columns(String size)
+    {
+        return Integer.parseInt(size.substring(0, size.indexOf('x')));
+    }
+
+    /**
+     * Reads the rows from a size such as "7x6".
+     */
+    static int rows(String size)
+    {
+        return Integer.parseInt(size.substring(size.indexOf('x') + 1));
+    }
+
+    /**
+     * Works out the seed of one position, so that every run of a benchmark uses the same
+     * positions, and different sizes and fills use different ones.
+     */
+    static long seed(String size, double fill, int index)
+    {
+        return (size.hashCode() * 31L + Double.doubleToLongBits(fill)) * 0x9E3779B97F4A7C15L + index;
+    }
+}